@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.stream.IntStream;
+
+/**
+ * Runs the benchmark suite with the GC profiler (allocation rate per operation) and writes the
+ * results as JSON, so runs from different versions can be diffed. Regular JMH command line options
+ * (e.g. {@code -p n=1000}, {@code -rff other.json}) override these defaults.
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        int maxM = Engine.maxM(CellCountSweepBenchmark.L, CellCountSweepBenchmark.RC, CellCountSweepBenchmark.RADIUS);
+        String[] allM = IntStream.rangeClosed(1, maxM).mapToObj(Integer::toString).toArray(String[]::new);
+
+        CommandLineOptions cli = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli);
+        if (cli.getIncludes().isEmpty()) {
+            options.include(NeighborSearchBenchmark.class.getSimpleName());
+            options.include(CellCountSweepBenchmark.class.getSimpleName());
+            options.include(DistanceKernelBenchmark.class.getSimpleName());
+            options.include(SpatialSortBenchmark.class.getSimpleName());
+        }
+        if (!cli.getParameter("m").hasValue()) {
+            options.param("m", allM);
+        }
+        if (cli.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!cli.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            options.result("jmh-results.json");
+        }
+
+        new Runner(options.build()).run();
+    }
+}
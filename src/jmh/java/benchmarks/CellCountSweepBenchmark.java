@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed system, every M from 1 (brute force) to the largest valid value. The annotation lists a
+ * coarse default; {@link BenchmarkMain} replaces it with the full range for the configured box.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CellCountSweepBenchmark {
+    static final double L = 100;
+    static final double RC = 1;
+    static final double RADIUS = 0.25;
+
+    @Param({"periodic", "walls"})
+    public String boundary;
+
+    @Param({"1000", "10000"})
+    public int n;
+
+    @Param({"1", "2", "4", "8", "16", "33", "66"})
+    public int m;
+
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (m > Engine.maxM(L, RC, RADIUS)) {
+            throw new IllegalArgumentException("M = " + m + " violates L/M >= rc + 2r");
+        }
+        engine = Engine.create(L, n, RC, m, RADIUS, boundary);
+    }
+
+    @Benchmark
+    public long cellIndexMethod() {
+        return engine.run();
+    }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar distance loop against the Vector API kernel, from sparse to dense cells.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class DistanceKernelBenchmark {
+    static final double RADIUS = 0.25;
+    static final double RC = 1;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"periodic", "walls"})
+    public String boundary;
+
+    @Param({"100000", "1000000"})
+    public int n;
+
+    /** Particles per unit area; higher densities put more candidates in each cell. */
+    @Param({"1", "4", "10"})
+    public double density;
+
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double L = Math.sqrt(n / density);
+        engine = Engine.create(L, n, RC, Engine.maxM(L, RC, RADIUS), RADIUS, boundary, kernel.equals("vector"));
+    }
+
+    @Benchmark
+    public long neighborSearch() {
+        return engine.run();
+    }
+}
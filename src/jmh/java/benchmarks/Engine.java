@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Bridge to the simulation classes. JMH refuses benchmarks in the default package and named packages
+ * cannot import from it, so the engine is reached reflectively. Only setup goes through reflection:
+ * the measured call is a bound {@link MethodHandle}, whose cost is negligible next to a neighbor search.
+ */
+final class Engine {
+    private static final Constructor<?> CONSTRUCTOR;
+    private static final Method GENERATE_PARTICLES;
+    private static final Method RUN_PERIODIC;
+    private static final Method RUN_WALLS;
+    private static final Method WITH_VECTOR_KERNEL;
+    private static final Method WITH_SPATIAL_SORT;
+    private static final Class<? extends Enum> SORT_ORDER;
+
+    static {
+        try {
+            Class<?> cim = Class.forName("CellIndexMethod");
+            CONSTRUCTOR = cim.getDeclaredConstructor(double.class, int.class, double.class, int.class);
+            GENERATE_PARTICLES = cim.getDeclaredMethod("generateRandomParticles", double.class);
+            RUN_PERIODIC = cim.getDeclaredMethod("runSimulation");
+            RUN_WALLS = cim.getDeclaredMethod("runSimulationWithWalls");
+            WITH_VECTOR_KERNEL = cim.getDeclaredMethod("withVectorKernel", boolean.class);
+            SORT_ORDER = Class.forName("SpatialSort$Order").asSubclass(Enum.class);
+            WITH_SPATIAL_SORT = cim.getDeclaredMethod("withSpatialSort", SORT_ORDER);
+            CONSTRUCTOR.setAccessible(true);
+            GENERATE_PARTICLES.setAccessible(true);
+            RUN_PERIODIC.setAccessible(true);
+            RUN_WALLS.setAccessible(true);
+            WITH_VECTOR_KERNEL.setAccessible(true);
+            WITH_SPATIAL_SORT.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MethodHandle run;
+
+    private Engine(MethodHandle run) {
+        this.run = run;
+    }
+
+    /**
+     * Creates a {@code CellIndexMethod} with {@code N} random particles of the given radius and binds
+     * the run method for the requested boundary ("periodic" or "walls").
+     */
+    static Engine create(double L, int N, double rc, int M, double radius, String boundary) {
+        return create(L, N, rc, M, radius, boundary, false);
+    }
+
+    /**
+     * As {@link #create(double, int, double, int, double, String)}, optionally on the SIMD kernel
+     * (the fork must run with {@code --add-modules jdk.incubator.vector}).
+     */
+    static Engine create(double L, int N, double rc, int M, double radius, String boundary, boolean vector) {
+        return create(L, N, rc, M, radius, boundary, vector, "none");
+    }
+
+    /**
+     * As {@link #create(double, int, double, int, double, String, boolean)}, with the particle storage
+     * sorted before each scan ("none", "cell" or "morton").
+     */
+    @SuppressWarnings("unchecked")
+    static Engine create(double L, int N, double rc, int M, double radius, String boundary, boolean vector,
+                         String sortOrder) {
+        try {
+            Object instance = CONSTRUCTOR.newInstance(L, N, rc, M);
+            GENERATE_PARTICLES.invoke(instance, radius);
+            WITH_VECTOR_KERNEL.invoke(instance, vector);
+            WITH_SPATIAL_SORT.invoke(instance, sortOrder.equals("none")
+                    ? null
+                    : Enum.valueOf(SORT_ORDER, sortOrder.toUpperCase()));
+            Method method = switch (boundary) {
+                case "periodic" -> RUN_PERIODIC;
+                case "walls" -> RUN_WALLS;
+                default -> throw new IllegalArgumentException("Unknown boundary: " + boundary);
+            };
+            return new Engine(MethodHandles.lookup().unreflect(method).bindTo(instance));
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static int maxM(double L, double rc, double radius) {
+        return Math.max(1, (int) (L / (rc + 2 * radius)));
+    }
+
+    long run() {
+        try {
+            return (long) run.invokeExact();
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
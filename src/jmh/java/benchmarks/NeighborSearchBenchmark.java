@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full neighbor search at the ideal M, swept over system size, number density and cutoff radius.
+ * The box side is derived from the density so that N and density can be varied independently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NeighborSearchBenchmark {
+    static final double RADIUS = 0.25;
+
+    @Param({"periodic", "walls"})
+    public String boundary;
+
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    public int n;
+
+    /** Particles per unit area. */
+    @Param({"0.1", "1", "4"})
+    public double density;
+
+    @Param({"0.5", "1", "2"})
+    public double rc;
+
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double L = Math.sqrt(n / density);
+        engine = Engine.create(L, n, rc, Engine.maxM(L, rc, RADIUS), RADIUS, boundary);
+    }
+
+    @Benchmark
+    public long cellIndexMethod() {
+        return engine.run();
+    }
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Neighbor search on particles in random list order against storage sorted by cell or along a Morton
+ * curve (sorting included in the measured time). The difference is in memory traffic, so run it with
+ * the hardware counters to see the cache misses per operation:
+ * <pre>
+ * java -jar target/benchmarks.jar SpatialSortBenchmark -prof perfnorm
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpatialSortBenchmark {
+    static final double RADIUS = 0.25;
+    static final double RC = 1;
+    static final double DENSITY = 1;
+
+    @Param({"none", "cell", "morton"})
+    public String order;
+
+    @Param({"100000", "1000000", "4000000"})
+    public int n;
+
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double L = Math.sqrt(n / DENSITY);
+        engine = Engine.create(L, n, RC, Engine.maxM(L, RC, RADIUS), RADIUS, "periodic", false, order);
+    }
+
+    @Benchmark
+    public long neighborSearch() {
+        return engine.run();
+    }
+}
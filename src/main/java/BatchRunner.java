@@ -0,0 +1,80 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs many independent configurations concurrently on a work-stealing pool. Every worker thread
+ * keeps one {@link Workspace}, so particle arrays and cell lists are reused from one configuration
+ * to the next, and pairs are counted as they are found instead of being stored. Each result is
+ * appended to the CSV file as soon as its configuration finishes, in completion order.
+ */
+class BatchRunner {
+    record Configuration(int id, int N, double L, double rc, double radius, boolean periodic, long seed) {
+    }
+
+    record Result(Configuration configuration, int M, long pairs, long durationNanos) {
+    }
+
+    static final String HEADER = "Configuration,N,L,M,rc,Periodic,Pairs,Runtime_ns\n";
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    BatchRunner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    BatchRunner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs every configuration and streams one CSV line per configuration to {@code fileName}.
+     */
+    void run(List<Configuration> configurations, String fileName) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write(HEADER);
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(configurations.size());
+            for (Configuration configuration : configurations) {
+                tasks.add(pool.submit(() -> {
+                    Result result = run(configuration);
+                    synchronized (writer) {
+                        try {
+                            writer.write(toCsv(result));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    Result run(Configuration configuration) {
+        List<Particle> particles = new ParticleGenerator(configuration.seed())
+                .uniform(configuration.N(), configuration.L(), configuration.L(), configuration.radius(), configuration.radius());
+
+        CellIndexMethod md = new CellIndexMethod(particles, configuration.L(), configuration.L(), configuration.rc())
+                .withWorkspace(workspaces.get());
+        long[] pairs = {0};
+        long duration = md.forEachPair(configuration.periodic(), configuration.periodic(), (i, j, distance) -> pairs[0]++);
+        return new Result(configuration, md.getM(), pairs[0], duration);
+    }
+
+    private static String toCsv(Result result) {
+        Configuration c = result.configuration();
+        return String.format("%d,%d,%f,%d,%.2f,%b,%d,%d\n", c.id(), c.N(), c.L(), result.M(), c.rc(), c.periodic(),
+                result.pairs(), result.durationNanos());
+    }
+}
@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary snapshot of particles and, optionally, their CSR neighbor lists, written and read
+ * through memory-mapped {@link FileChannel}s. All values are little-endian.
+ * <pre>
+ * header   int magic, int version, int N, int Mx, int My, int flags,
+ *          double Lx, double Ly, double rc, long neighborCount
+ * arrays   int ids[N], double x[N], double y[N], double radius[N]
+ * optional int offsets[N + 1], int neighbors[neighborCount]   (present when flags has HAS_NEIGHBORS)
+ * </pre>
+ * N and the particle ids are 32-bit ints, so a snapshot holds at most {@code Integer.MAX_VALUE} particles.
+ * <p>
+ * {@link #map} loads without copying: it returns buffers that are views of the mapped file, paged in
+ * on access, for readers that can work off {@link DoubleBuffer}s. Each section must then be smaller
+ * than 2 GB. {@link #read} copies the sections into the primitive arrays of a {@link ParticleStore}
+ * and {@link NeighborList}, which is what the engines scan; it maps in chunks, so there sections
+ * larger than 2 GB are supported.
+ */
+final class BinaryParticleFile {
+    static final int MAGIC = 0x43494D42; // "CIMB"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 6 * Integer.BYTES + 3 * Double.BYTES + Long.BYTES;
+
+    static final int PERIODIC_X = 1;
+    static final int PERIODIC_Y = 1 << 1;
+    static final int HAS_NEIGHBORS = 1 << 2;
+
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    /**
+     * Contents of a snapshot file.
+     */
+    static final class Snapshot {
+        final double Lx;
+        final double Ly;
+        final double rc;
+        final int Mx;
+        final int My;
+        final boolean periodicX;
+        final boolean periodicY;
+        final ParticleStore store;
+        final NeighborList neighborList; // null when the file holds no neighbors
+
+        Snapshot(double Lx, double Ly, double rc, int Mx, int My, boolean periodicX, boolean periodicY,
+                 ParticleStore store, NeighborList neighborList) {
+            this.Lx = Lx;
+            this.Ly = Ly;
+            this.rc = rc;
+            this.Mx = Mx;
+            this.My = My;
+            this.periodicX = periodicX;
+            this.periodicY = periodicY;
+            this.store = store;
+            this.neighborList = neighborList;
+        }
+
+        List<Particle> toParticles() {
+            List<Particle> particles = new ArrayList<>(store.n);
+            for (int i = 0; i < store.n; i++) {
+                particles.add(new Particle(store.ids[i], store.x[i], store.y[i], store.radius[i]));
+            }
+            return particles;
+        }
+    }
+
+    /**
+     * Zero-copy view of a snapshot file. The buffers read straight from the mapping, which stays valid
+     * after the file is closed, until the buffers are garbage collected.
+     */
+    static final class MappedSnapshot {
+        final Header header;
+        final IntBuffer ids;
+        final DoubleBuffer x;
+        final DoubleBuffer y;
+        final DoubleBuffer radius;
+        final IntBuffer offsets;   // null when the file holds no neighbors
+        final IntBuffer neighbors; // null when the file holds no neighbors
+
+        private MappedSnapshot(Header header, IntBuffer ids, DoubleBuffer x, DoubleBuffer y, DoubleBuffer radius,
+                               IntBuffer offsets, IntBuffer neighbors) {
+            this.header = header;
+            this.ids = ids;
+            this.x = x;
+            this.y = y;
+            this.radius = radius;
+            this.offsets = offsets;
+            this.neighbors = neighbors;
+        }
+
+        int size() {
+            return header.n();
+        }
+    }
+
+    private BinaryParticleFile() {
+    }
+
+    /**
+     * Writes the particles of {@code md} and, if it has been run, its neighbor lists and boundary mode.
+     */
+    static void write(Path path, CellIndexMethod md) throws IOException {
+        int flags = (md.isPeriodicX() ? PERIODIC_X : 0) | (md.isPeriodicY() ? PERIODIC_Y : 0);
+        write(path, ParticleStore.of(md.getParticles()), md.getNeighborList(),
+                md.Lx, md.Ly, md.rc, md.getMx(), md.getMy(), flags);
+    }
+
+    static void write(Path path, ParticleStore store, NeighborList neighborList,
+                      double Lx, double Ly, double rc, int Mx, int My, int flags) throws IOException {
+        int n = store.n;
+        long neighborCount = neighborList == null ? 0 : neighborList.ids.length;
+        if (neighborList != null) {
+            flags |= HAS_NEIGHBORS;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(Mx).putInt(My).putInt(flags)
+                    .putDouble(Lx).putDouble(Ly).putDouble(rc).putLong(neighborCount);
+
+            long position = HEADER_BYTES;
+            position = writeInts(channel, position, store.ids, n);
+            position = writeDoubles(channel, position, store.x, n);
+            position = writeDoubles(channel, position, store.y, n);
+            position = writeDoubles(channel, position, store.radius, n);
+            if (neighborList != null) {
+                position = writeInts(channel, position, neighborList.offsets, n + 1);
+                writeInts(channel, position, neighborList.ids, neighborList.ids.length);
+            }
+        }
+    }
+
+    static Snapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            int n = header.n();
+            int flags = header.flags();
+            long neighborCount = header.neighborCount();
+
+            ParticleStore store = new ParticleStore(n);
+            long position = HEADER_BYTES;
+            position = readInts(channel, position, store.ids, n);
+            position = readDoubles(channel, position, store.x, n);
+            position = readDoubles(channel, position, store.y, n);
+            position = readDoubles(channel, position, store.radius, n);
+
+            NeighborList neighborList = null;
+            if ((flags & HAS_NEIGHBORS) != 0) {
+                int[] offsets = new int[n + 1];
+                int[] ids = new int[Math.toIntExact(neighborCount)];
+                position = readInts(channel, position, offsets, n + 1);
+                readInts(channel, position, ids, ids.length);
+                neighborList = new NeighborList(offsets, ids);
+            }
+            return new Snapshot(header.Lx(), header.Ly(), header.rc(), header.Mx(), header.My(),
+                    (flags & PERIODIC_X) != 0, (flags & PERIODIC_Y) != 0,
+                    store, neighborList);
+        }
+    }
+
+    /**
+     * Maps a snapshot without copying it; see {@link MappedSnapshot}.
+     *
+     * @throws IOException if the file is not a snapshot or a section is 2 GB or larger
+     */
+    static MappedSnapshot map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            long n = header.n();
+            long position = HEADER_BYTES;
+            IntBuffer ids = mapSection(channel, position, n * Integer.BYTES).asIntBuffer();
+            position += n * Integer.BYTES;
+            DoubleBuffer x = mapSection(channel, position, n * Double.BYTES).asDoubleBuffer();
+            position += n * Double.BYTES;
+            DoubleBuffer y = mapSection(channel, position, n * Double.BYTES).asDoubleBuffer();
+            position += n * Double.BYTES;
+            DoubleBuffer radius = mapSection(channel, position, n * Double.BYTES).asDoubleBuffer();
+            position += n * Double.BYTES;
+            IntBuffer offsets = null;
+            IntBuffer neighbors = null;
+            if ((header.flags() & HAS_NEIGHBORS) != 0) {
+                offsets = mapSection(channel, position, (n + 1) * Integer.BYTES).asIntBuffer();
+                position += (n + 1) * Integer.BYTES;
+                neighbors = mapSection(channel, position, header.neighborCount() * Integer.BYTES).asIntBuffer();
+            }
+            return new MappedSnapshot(header, ids, x, y, radius, offsets, neighbors);
+        }
+    }
+
+    private static MappedByteBuffer mapSection(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Section of " + size + " bytes is too large to map as one buffer; use read()");
+        }
+        return map(channel, FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Header of a snapshot file, for callers that stream the particle arrays with {@link #readRange}.
+     */
+    record Header(int n, int Mx, int My, int flags, double Lx, double Ly, double rc, long neighborCount) {
+    }
+
+    static Header readHeader(FileChannel channel) throws IOException {
+        MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a particle snapshot");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        Header result = new Header(header.getInt(), header.getInt(), header.getInt(), header.getInt(),
+                header.getDouble(), header.getDouble(), header.getDouble(), header.getLong());
+        // N is a 32-bit count; a negative one is a corrupt file, not more than Integer.MAX_VALUE particles
+        if (result.n() < 0 || result.neighborCount() < 0) {
+            throw new IOException("Corrupt snapshot header: N = " + result.n()
+                    + ", neighborCount = " + result.neighborCount());
+        }
+        return result;
+    }
+
+    /**
+     * Reads particles {@code from .. from + count} into the start of the given arrays, mapping only that
+     * range of each section.
+     */
+    static void readRange(FileChannel channel, Header header, int from, int count,
+                          int[] ids, double[] x, double[] y, double[] radius) throws IOException {
+        long n = header.n();
+        long idsAt = HEADER_BYTES;
+        long xAt = idsAt + n * Integer.BYTES;
+        long yAt = xAt + n * Double.BYTES;
+        long radiusAt = yAt + n * Double.BYTES;
+        map(channel, FileChannel.MapMode.READ_ONLY, idsAt + (long) from * Integer.BYTES, (long) count * Integer.BYTES)
+                .asIntBuffer().get(ids, 0, count);
+        map(channel, FileChannel.MapMode.READ_ONLY, xAt + (long) from * Double.BYTES, (long) count * Double.BYTES)
+                .asDoubleBuffer().get(x, 0, count);
+        map(channel, FileChannel.MapMode.READ_ONLY, yAt + (long) from * Double.BYTES, (long) count * Double.BYTES)
+                .asDoubleBuffer().get(y, 0, count);
+        map(channel, FileChannel.MapMode.READ_ONLY, radiusAt + (long) from * Double.BYTES, (long) count * Double.BYTES)
+                .asDoubleBuffer().get(radius, 0, count);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long writeInts(FileChannel channel, long position, int[] values, int count) throws IOException {
+        long perChunk = CHUNK_BYTES / Integer.BYTES;
+        // A long position: stepping an int past the last chunk of a large section would overflow
+        for (long from = 0; from < count; from += perChunk) {
+            int length = (int) Math.min(perChunk, count - from);
+            map(channel, FileChannel.MapMode.READ_WRITE, position, (long) length * Integer.BYTES)
+                    .asIntBuffer().put(values, (int) from, length);
+            position += (long) length * Integer.BYTES;
+        }
+        return position;
+    }
+
+    private static long writeDoubles(FileChannel channel, long position, double[] values, int count) throws IOException {
+        long perChunk = CHUNK_BYTES / Double.BYTES;
+        for (long from = 0; from < count; from += perChunk) {
+            int length = (int) Math.min(perChunk, count - from);
+            map(channel, FileChannel.MapMode.READ_WRITE, position, (long) length * Double.BYTES)
+                    .asDoubleBuffer().put(values, (int) from, length);
+            position += (long) length * Double.BYTES;
+        }
+        return position;
+    }
+
+    private static long readInts(FileChannel channel, long position, int[] values, int count) throws IOException {
+        long perChunk = CHUNK_BYTES / Integer.BYTES;
+        for (long from = 0; from < count; from += perChunk) {
+            int length = (int) Math.min(perChunk, count - from);
+            map(channel, FileChannel.MapMode.READ_ONLY, position, (long) length * Integer.BYTES)
+                    .asIntBuffer().get(values, (int) from, length);
+            position += (long) length * Integer.BYTES;
+        }
+        return position;
+    }
+
+    private static long readDoubles(FileChannel channel, long position, double[] values, int count) throws IOException {
+        long perChunk = CHUNK_BYTES / Double.BYTES;
+        for (long from = 0; from < count; from += perChunk) {
+            int length = (int) Math.min(perChunk, count - from);
+            map(channel, FileChannel.MapMode.READ_ONLY, position, (long) length * Double.BYTES)
+                    .asDoubleBuffer().get(values, (int) from, length);
+            position += (long) length * Double.BYTES;
+        }
+        return position;
+    }
+}
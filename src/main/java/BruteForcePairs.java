@@ -0,0 +1,51 @@
+/**
+ * All-pairs search for grids where every cell is adjacent to every other (at most 2 x 2 cells), which
+ * is where the cell stencil degenerates: {@code runner} uses M = 1 as its brute-force baseline.
+ * The N(N-1)/2 pairs are visited in square tiles, so the inner tile stays in L1 while the outer
+ * tile streams past it.
+ * <p>
+ * Periodic axes use the minimum image {@code d - L * rint(d / L)} of the signed separation, which
+ * is antisymmetric in the pair and therefore gives the same answer for (i, j) and (j, i) even when
+ * the separation is close to L/2.
+ */
+final class BruteForcePairs {
+    static final int TILE = 256;
+
+    private BruteForcePairs() {
+    }
+
+    static int tileCount(int n) {
+        return (n + TILE - 1) / TILE;
+    }
+
+    /**
+     * Scans the pairs whose first particle lies in tiles {@code [fromTile, toTile)}.
+     */
+    static void scan(ParticleStore store, double Lx, double Ly, double rc, boolean periodicX, boolean periodicY,
+                     int fromTile, int toTile, PairConsumer consumer) {
+        int n = store.n;
+        for (int tile = fromTile; tile < toTile; tile++) {
+            int aFrom = tile * TILE;
+            int aTo = Math.min(n, aFrom + TILE);
+            for (int bFrom = aFrom; bFrom < n; bFrom += TILE) {
+                int bTo = Math.min(n, bFrom + TILE);
+                for (int a = aFrom; a < aTo; a++) {
+                    double x1 = store.x[a];
+                    double y1 = store.y[a];
+                    double reach = rc + store.radius[a];
+                    for (int b = Math.max(bFrom, a + 1); b < bTo; b++) {
+                        double dx = x1 - store.x[b];
+                        double dy = y1 - store.y[b];
+                        if (periodicX) dx -= Lx * Math.rint(dx / Lx);
+                        if (periodicY) dy -= Ly * Math.rint(dy / Ly);
+                        double cutoff = reach + store.radius[b];
+                        double distance2 = dx * dx + dy * dy;
+                        if (distance2 <= cutoff * cutoff) {
+                            consumer.accept(a, b, Math.sqrt(distance2));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,6 +0,0 @@
-import java.util.ArrayList;
-import java.util.List;
-
-public class Cell {
-    List<Particle> particles = new ArrayList<>();
-}
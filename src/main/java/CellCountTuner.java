@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the number of cells per side M. The largest M allowed by {@code L/M >= rc + 2r} minimizes
+ * distance checks, but empty-cell overhead and cache effects can make a smaller M faster for very
+ * sparse or very dense systems.
+ * <p>
+ * Every valid M is scored with a cost model calibrated once per JVM:
+ * {@code cost(M) = binCost * N + cellCost * M^2 + pairCost * checks(M)}, where {@code checks(M)} is
+ * the expected number of distance evaluations of the half-shell stencil. Grids of at most 2 x 2 cells
+ * go to the tiled all-pairs kernel instead, as in the engine, and are scored with its own per-pair
+ * cost. Optionally the best few candidates are then timed on the real particles. Choices are cached
+ * per (N, L, rc, r, boundary).
+ */
+class CellCountTuner {
+    record Choice(int M, double predictedNanos, boolean measured) {
+    }
+
+    private record Regime(int N, double L, double rc, double radius, boolean periodic) {
+    }
+
+    private static final int MEASURED_CANDIDATES = 3;
+    private static final int MEASURE_REPETITIONS = 3;
+
+    private static final Map<Regime, Choice> cache = new ConcurrentHashMap<>();
+    private static volatile double[] coefficients;
+
+    private CellCountTuner() {
+    }
+
+    static int maxM(double L, double rc, double maxRadius) {
+        return Math.max(1, (int) (L / (rc + 2 * maxRadius)));
+    }
+
+    /**
+     * Model-only choice for a regime, served from the cache when available.
+     */
+    static Choice select(int N, double L, double rc, double maxRadius, boolean periodic) {
+        return cache.computeIfAbsent(new Regime(N, L, rc, maxRadius, periodic),
+                regime -> rank(regime).get(0));
+    }
+
+    /**
+     * Times the best candidates of the model on {@code particles} and keeps the fastest. A measured
+     * choice replaces a model-only one in the cache.
+     */
+    static Choice tune(List<Particle> particles, double L, double rc, double maxRadius, boolean periodic) {
+        Regime regime = new Regime(particles.size(), L, rc, maxRadius, periodic);
+        Choice cached = cache.get(regime);
+        if (cached != null && cached.measured()) {
+            return cached;
+        }
+        Choice best = null;
+        long bestNanos = Long.MAX_VALUE;
+        List<Choice> ranked = rank(regime);
+        for (Choice candidate : ranked.subList(0, Math.min(MEASURED_CANDIDATES, ranked.size()))) {
+            CellIndexMethod md = new CellIndexMethod(particles, L, candidate.M(), particles.size(), rc);
+            long nanos = Long.MAX_VALUE;
+            for (int k = 0; k < MEASURE_REPETITIONS; k++) {
+                nanos = Math.min(nanos, periodic ? md.runSimulation() : md.runSimulationWithWalls());
+            }
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                best = new Choice(candidate.M(), candidate.predictedNanos(), true);
+            }
+        }
+        cache.put(regime, best);
+        return best;
+    }
+
+    static double predictNanos(int N, double L, int M, boolean periodic) {
+        double[] c = calibrate();
+        double pairCost = usesBruteForce(M) ? c[3] : c[2];
+        return c[0] * N + c[1] * (double) M * M + pairCost * expectedChecks(N, M, periodic);
+    }
+
+    /**
+     * Expected distance evaluations: the own cell counted once per pair plus four full neighbor cells,
+     * or every pair once on the grids the engine scans all-pairs.
+     */
+    static double expectedChecks(int N, int M, boolean periodic) {
+        if (usesBruteForce(M)) {
+            return (double) N * (N - 1) / 2;
+        }
+        double perCell = (double) N / ((double) M * M);
+        return N * (perCell / 2 + 4 * perCell);
+    }
+
+    /**
+     * Mirrors the dispatch in {@link CellIndexMethod}: walls or periodic, grids of at most 2 x 2 cells
+     * are scanned by {@link BruteForcePairs}.
+     */
+    static boolean usesBruteForce(int M) {
+        return M <= 2;
+    }
+
+    static void clearCache() {
+        cache.clear();
+    }
+
+    private static List<Choice> rank(Regime regime) {
+        List<Choice> choices = new ArrayList<>();
+        for (int m = 1; m <= maxM(regime.L(), regime.rc(), regime.radius()); m++) {
+            choices.add(new Choice(m, predictNanos(regime.N(), regime.L(), m, regime.periodic()), false));
+        }
+        choices.sort(Comparator.comparingDouble(Choice::predictedNanos));
+        return choices;
+    }
+
+    /**
+     * Fits {binCost, cellCost, pairCost, bruteForcePairCost} in nanoseconds from four small timed runs.
+     */
+    private static double[] calibrate() {
+        double[] c = coefficients;
+        if (c != null) {
+            return c;
+        }
+        synchronized (CellCountTuner.class) {
+            if (coefficients != null) {
+                return coefficients;
+            }
+            // Per-pair cost of the all-pairs kernel: a single cell
+            int pairN = 2000;
+            double bruteNanos = timeRun(randomParticles(pairN, 10), 10, 1, 1);
+            double bruteForcePairCost = bruteNanos / expectedChecks(pairN, 1, true);
+
+            // Per-pair cost of the stencil: a dense 3 x 3 grid, where pair checks dwarf everything else
+            double pairNanos = timeRun(randomParticles(pairN, 10), 10, 3, 1);
+            double pairCost = pairNanos / expectedChecks(pairN, 3, true);
+
+            // Per-cell cost: an empty grid
+            int cellM = 400;
+            double cellNanos = timeRun(new ArrayList<>(), cellM, cellM, 0.5);
+            double cellCost = cellNanos / ((double) cellM * cellM);
+
+            // Per-particle binning cost: what is left of a sparse run once pairs and cells are accounted for
+            int binN = 100_000;
+            double L = 1000;
+            int binM = 500;
+            double binNanos = timeRun(randomParticles(binN, L), L, binM, 1);
+            double rest = binNanos - cellCost * binM * binM - pairCost * expectedChecks(binN, binM, true);
+            double binCost = Math.max(0, rest / binN);
+
+            coefficients = new double[]{binCost, cellCost, pairCost, bruteForcePairCost};
+            return coefficients;
+        }
+    }
+
+    private static double timeRun(List<Particle> particles, double L, int M, double rc) {
+        CellIndexMethod md = new CellIndexMethod(particles, L, M, particles.size(), rc);
+        long best = Long.MAX_VALUE;
+        for (int k = 0; k < 5; k++) {
+            best = Math.min(best, md.runSimulation());
+        }
+        return best;
+    }
+
+    private static List<Particle> randomParticles(int N, double L) {
+        Random random = new Random(42);
+        List<Particle> particles = new ArrayList<>(N);
+        for (int i = 0; i < N; i++) {
+            particles.add(new Particle(i, random.nextDouble() * L, random.nextDouble() * L));
+        }
+        return particles;
+    }
+}
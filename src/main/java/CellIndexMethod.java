@@ -1,62 +1,89 @@
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
 
 public class CellIndexMethod {
 
     private List<Particle> particles;
-    private final Map<Integer, Set<Particle>> neighbors;
-    final double L;
+    final double L; // Side of a square box; equals Lx for rectangular boxes
+    final double Lx;
+    final double Ly;
     final double rc;
-    private int M;
+    private int Mx;
+    private int My;
     final int N;
-    private Cell[][] cells;
+    private boolean periodicX;
+    private boolean periodicY;
+    private ParticleStore store;
+    private CellList cells;
+    private NeighborList neighborList;
     private double maxParticleRadius;
+    private ForkJoinPool pool;
+    private double predictedCostNanos = Double.NaN;
+    private long lastStreamNanos;
+    private VectorPairKernel vectorKernel;
+    private Workspace workspace;
+    private boolean metricsEnabled;
+    private RunMetrics lastMetrics;
+    private long seed = new SplittableRandom().nextLong();
+    private SpatialSort spatialSort;
 
     CellIndexMethod(List<Particle> particles, double L, int M, int N, double rc) {
         this.particles = particles;
         this.L = L;
-        this.M = M;
+        this.Lx = L;
+        this.Ly = L;
+        this.Mx = M;
+        this.My = M;
         this.N = N;
         this.rc = rc;
-        this.neighbors = new HashMap<>(N);
-        for (int i = 0; i < N; i++) {
-            this.neighbors.put(i, new HashSet<>());
-        }
         this.maxParticleRadius = findMaxRadius(particles);
+        requireValidM();
+    }
+
+    /**
+     * Rectangular {@code Lx} x {@code Ly} box; each axis gets its own ideal cell count.
+     */
+    CellIndexMethod(List<Particle> particles, double Lx, double Ly, double rc) {
+        this.particles = particles;
+        this.L = Lx;
+        this.Lx = Lx;
+        this.Ly = Ly;
+        this.N = particles.size();
+        this.rc = rc;
+        this.maxParticleRadius = findMaxRadius(particles);
+        this.generateIdealM();
     }
 
     CellIndexMethod(double L, int N, double rc) {
-        this.L = L;
+        this(L, L, N, rc);
+    }
+
+    CellIndexMethod(double Lx, double Ly, int N, double rc) {
+        this.L = Lx;
+        this.Lx = Lx;
+        this.Ly = Ly;
         this.N = N;
         this.rc = rc;
-        this.neighbors = new HashMap<>(N);
-        for (int i = 0; i < N; i++) {
-            this.neighbors.put(i, new HashSet<>());
-        }
-        this.generateIdealM();
         this.maxParticleRadius = 0;
+        this.generateIdealM();
     }
 
     CellIndexMethod(double L, int N, double rc, int M) {
         this.L = L;
+        this.Lx = L;
+        this.Ly = L;
         this.N = N;
         this.rc = rc;
-        this.M = M;
-        this.neighbors = new HashMap<>(N);
-        for (int i = 0; i < N; i++) {
-            this.neighbors.put(i, new HashSet<>());
-        }
+        this.Mx = M;
+        this.My = M;
         this.maxParticleRadius = 0;
+        requireValidM();
     }
 
     CellIndexMethod generateRandomParticles() {
-        List<Particle> toSet = new ArrayList<>();
-        Random random = new Random();
-        for (int i = 0; i < N; i++) {
-            double x = random.nextDouble() * L;
-            double y = random.nextDouble() * L;
-            toSet.add(new Particle(i, x, y));
-        }
-        particles = toSet;
+        particles = new ParticleGenerator(seed).uniform(N, Lx, Ly, 0, 0);
         return this;
     }
 
@@ -68,15 +95,15 @@ public class CellIndexMethod {
     }
 
     CellIndexMethod generateRandomParticles(double maxRadius) {
-        List<Particle> toSet = new ArrayList<>();
-        Random random = new Random();
-        for (int i = 0; i < N; i++) {
-            double x = random.nextDouble() * L;
-            double y = random.nextDouble() * L;
-//            double radius = random.nextDouble() * maxRadius;
-            toSet.add(new Particle(i, x, y, maxRadius));
-        }
-        particles = toSet;
+        return generateRandomParticles(maxRadius, maxRadius);
+    }
+
+    /**
+     * Random positions with radii drawn log-uniformly from {@code [minRadius, maxRadius]}. Wide
+     * distributions are better served by {@link MultiLevelCellIndexMethod} than by a single grid.
+     */
+    CellIndexMethod generateRandomParticles(double minRadius, double maxRadius) {
+        particles = new ParticleGenerator(seed).uniform(N, Lx, Ly, minRadius, maxRadius);
         this.maxParticleRadius = maxRadius;
         if (!checkMValue()){
             generateIdealM();
@@ -84,144 +111,530 @@ public class CellIndexMethod {
         return this;
     }
 
+    /**
+     * Hard disks of the given radius that do not overlap, wrapping across the box edges when
+     * {@code periodic}.
+     *
+     * @throws IllegalArgumentException if the packing is too dense to place all {@code N} disks
+     */
+    CellIndexMethod generateNonOverlappingParticles(double radius, boolean periodic) {
+        particles = new ParticleGenerator(seed).nonOverlapping(N, Lx, Ly, radius, periodic);
+        this.maxParticleRadius = radius;
+        if (!checkMValue()){
+            generateIdealM();
+        }
+        return this;
+    }
+
+    /**
+     * Permutes the particle storage into cell order (or Morton order of the cells) before each scan, so
+     * that neighbors are scanned from contiguous memory; {@code null} keeps the list order. Results are
+     * still reported by the original particle indices.
+     */
+    CellIndexMethod withSpatialSort(SpatialSort.Order order) {
+        this.spatialSort = order == null ? null : new SpatialSort(order);
+        return this;
+    }
+
+    /**
+     * Seed for the {@code generate...} methods; without it every instance draws a fresh seed.
+     */
+    CellIndexMethod withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Enables the parallel neighbor search on the given pool; {@code null} restores the serial path.
+     */
+    CellIndexMethod withParallelism(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    CellIndexMethod withParallelism() {
+        return withParallelism(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Enables the detailed {@link RunMetrics} counters (distance evaluations, accepted pairs, cell
+     * occupancy and allocated bytes). Phase timings are recorded either way.
+     */
+    CellIndexMethod withMetrics(boolean enabled) {
+        this.metricsEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Takes the particle arrays, cell list and pair buffer from {@code workspace} instead of allocating
+     * them. The workspace is overwritten by the next run that uses it.
+     */
+    CellIndexMethod withWorkspace(Workspace workspace) {
+        this.workspace = workspace;
+        return this;
+    }
+
+    /**
+     * Switches the distance checks to the SIMD {@link VectorPairKernel}. Requires the JVM to be
+     * started with {@code --add-modules jdk.incubator.vector}.
+     */
+    CellIndexMethod withVectorKernel(boolean enabled) {
+        // Checked here rather than in VectorPairKernel, whose static initializer needs the module
+        if (enabled && ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            throw new UnsupportedOperationException("Start the JVM with --add-modules jdk.incubator.vector");
+        }
+        this.vectorKernel = enabled ? new VectorPairKernel() : null;
+        return this;
+    }
+
+    /**
+     * Replaces M with the one the {@link CellCountTuner} predicts to be fastest for this regime,
+     * timing the best candidates on the current particles when {@code measure} is set.
+     */
+    CellIndexMethod autoTuneM(boolean periodic, boolean measure) {
+        if (Lx != Ly) {
+            throw new UnsupportedOperationException("The M tuner only models square boxes");
+        }
+        CellCountTuner.Choice choice = measure
+                ? CellCountTuner.tune(particles, L, rc, maxParticleRadius, periodic)
+                : CellCountTuner.select(N, L, rc, maxParticleRadius, periodic);
+        Mx = choice.M();
+        My = choice.M();
+        predictedCostNanos = choice.predictedNanos();
+        return this;
+    }
+
+    private void requireValidM() {
+        if (Mx < 1 || My < 1 || !checkMValue()) {
+            throw new IllegalArgumentException("Invalid M value. The condition L/M >= rc + 2r must be satisfied");
+        }
+    }
+
     private boolean checkMValue() {
-        return (L / M) >= (rc + 2 * maxParticleRadius);
+        return (Lx / Mx) >= (rc + 2 * maxParticleRadius) && (Ly / My) >= (rc + 2 * maxParticleRadius);
     }
 
     void generateIdealM() {
-        int maxM = (int) (L / (rc + 2 * maxParticleRadius));
-        // Ensure M is at least 1
-        M = Math.max(1, maxM);
+        // Ensure M is at least 1 on each axis
+        Mx = Math.max(1, (int) (Lx / (rc + 2 * maxParticleRadius)));
+        My = Math.max(1, (int) (Ly / (rc + 2 * maxParticleRadius)));
     }
 
     long runSimulation() {
+        return runSimulation(true, true);
+    }
+
+    long runSimulationWithWalls() {
+        return runSimulation(false, false);
+    }
+
+    /**
+     * Runs the search with an independent boundary mode per axis: periodic, or walls when {@code false}.
+     */
+    long runSimulation(boolean periodicX, boolean periodicY) {
         long startTime = System.nanoTime();  // Start time in nanoseconds
+        NeighborSearchEvent event = new NeighborSearchEvent();
+        event.begin();
+        long startAllocated = metricsEnabled ? allocatedBytes() : 0;
 
         if (!checkMValue()) {
-            throw new RuntimeException("Invalid M value. The condition L/M >= rc must be satisfied");
+            throw new RuntimeException("Invalid M value. The condition L/M >= rc + 2r must be satisfied");
         }
+        this.periodicX = periodicX;
+        this.periodicY = periodicY;
         createCells();
+        long cellsTime = System.nanoTime();
         assignParticlesToCells();
+        long assignTime = System.nanoTime();
         calculateNeighbors();
 
         long endTime = System.nanoTime();  // End time in nanoseconds
 
         long duration = endTime - startTime;  // Calculate the duration
-        double milliseconds = (double) duration /1_000_000;
-//        System.out.printf("N: %d, L: %f, M: %d, rc: %f\tDuration(ms): %f\n", N, L, M, rc, milliseconds);
+        recordMetrics(startTime, cellsTime, assignTime, endTime, neighborList.pairCount(), startAllocated, event);
 
         return duration;  // Return the duration in nanoseconds
     }
 
+    private void recordMetrics(long startTime, long cellsTime, long assignTime, long endTime, long acceptedPairs,
+                               long startAllocated, NeighborSearchEvent event) {
+        RunMetrics metrics = new RunMetrics();
+        metrics.N = store.n;
+        metrics.Mx = Mx;
+        metrics.My = My;
+        metrics.periodicX = periodicX;
+        metrics.periodicY = periodicY;
+        metrics.createCellsNanos = cellsTime - startTime;
+        metrics.assignParticlesNanos = assignTime - cellsTime;
+        metrics.calculateNeighborsNanos = endTime - assignTime;
+        metrics.totalNanos = endTime - startTime;
+        if (metricsEnabled) {
+            // Allocation is measured on the calling thread only; parallel stripes are not included
+            metrics.allocatedBytes = allocatedBytes() - startAllocated;
+            metrics.acceptedPairs = acceptedPairs;
+            metrics.distanceEvaluations = countDistanceEvaluations();
+            metrics.occupancyHistogram = new long[RunMetrics.HISTOGRAM_BUCKETS];
+            for (int c = 0; c < cells.cellCount(); c++) {
+                int occupancy = cells.cellStart[c + 1] - cells.cellStart[c];
+                metrics.occupancyHistogram[Math.min(occupancy, RunMetrics.HISTOGRAM_BUCKETS - 1)]++;
+            }
+            metrics.emptyCells = metrics.occupancyHistogram[0];
+        }
+        lastMetrics = metrics;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.particles = metrics.N;
+            event.cellsX = Mx;
+            event.cellsY = My;
+            event.distanceEvaluations = metrics.distanceEvaluations;
+            event.acceptedPairs = metrics.acceptedPairs;
+            event.allocatedBytes = metrics.allocatedBytes;
+            event.commit();
+        }
+    }
 
-
-    private void createCells() {
-        cells = new Cell[M][M];
-        for (int i = 0; i < M; i++) {
-            for (int j = 0; j < M; j++) {
-                cells[i][j] = new Cell();
+    /**
+     * Distance evaluations performed by the last scan, derived from the cell occupancies with the
+     * same stencil rather than counted in the inner loop.
+     */
+    private long countDistanceEvaluations() {
+        if (Mx <= 2 && My <= 2) {
+            return (long) store.n * (store.n - 1) / 2;
+        }
+        boolean halfShell = (!periodicX || Mx >= 3) && (!periodicY || My >= 3);
+        int[] cellStart = cells.cellStart;
+        int[] visited = new int[8];
+        long evaluations = 0;
+        for (int i = 0; i < Mx; i++) {
+            for (int j = 0; j < My; j++) {
+                int c = cells.cellIndex(i, j);
+                long occupancy = cellStart[c + 1] - cellStart[c];
+                evaluations += occupancy * (occupancy - 1) / 2;
+                int count = 0;
+                for (int di = -1; di <= 1; di++) {
+                    for (int dj = -1; dj <= 1; dj++) {
+                        int other = neighborCell(i + di, j + dj);
+                        boolean scanned = halfShell
+                                ? other >= 0 && (di == 1 || (di == 0 && dj == 1))
+                                : other > c && !contains(visited, count, other);
+                        if (scanned) {
+                            visited[count++] = other;
+                            evaluations += occupancy * (cellStart[other + 1] - cellStart[other]);
+                        }
+                    }
+                }
             }
         }
+        return evaluations;
     }
 
-    private void assignParticlesToCells() {
-        double cellSize = L / M;
-        for (Particle p : particles) {
-            int cellX = (int) (p.x / cellSize);
-            int cellY = (int) (p.y / cellSize);
-            cells[cellX][cellY].particles.add(p);
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            return threads.getCurrentThreadAllocatedBytes();
         }
+        return 0;
     }
 
-    private void calculateNeighbors() {
-        for (int i = 0; i < M; i++) {
-            for (int j = 0; j < M; j++) {
-                for (Particle p1 : cells[i][j].particles) {
-                    // Check neighbors in current cell
-                    checkNeighborsInCell(p1, i, j);
-
-                    // Check neighbors in adjacent cells (top-right L shape and bottom-right)
-                    checkNeighborsInCell(p1, i, (j + 1) % M); // Top
-                    checkNeighborsInCell(p1, (i + 1) % M, (j + 1) % M); // Top-right
-                    checkNeighborsInCell(p1, (i + 1) % M, j); // Right
-                    checkNeighborsInCell(p1, (i + 1) % M, (j - 1 + M) % M); // Bottom-right
-                }
-            }
+
+
+    private void createCells() {
+        if (workspace != null) {
+            store = workspace.store(particles);
+            cells = workspace.cells(Lx, Ly, Mx, My);
+            return;
+        }
+        store = ParticleStore.of(particles);
+        if (cells == null || cells.Mx != Mx || cells.My != My || cells.Lx != Lx || cells.Ly != Ly) {
+            cells = new CellList(Lx, Ly, Mx, My);
         }
     }
 
-    private void checkNeighborsInCell(Particle p1, int cellX, int cellY) {
-        for (Particle p2 : cells[cellX][cellY].particles) {
-            if (p1.id != p2.id) {
-                double dx = Math.abs(p1.x - p2.x);
-                double dy = Math.abs(p1.y - p2.y);
+    private void assignParticlesToCells() {
+        cells.build(store.x, store.y, store.n);
+        if (spatialSort != null) {
+            store = spatialSort.apply(store, cells);
+        }
+        if (vectorKernel != null) {
+            vectorKernel.prepare(store, cells, Lx, Ly, rc, periodicX, periodicY);
+        }
+    }
 
-                // Apply periodic boundary conditions
-                dx = Math.min(dx, L - dx);
-                dy = Math.min(dy, L - dy);
+    private void calculateNeighbors() {
+        List<PairBuffer> buffers = scanPairs(stripes -> workspace != null && stripes == 1
+                ? workspace.pairs()
+                : new PairBuffer(Math.max(16, store.n / stripes)));
+        neighborList = NeighborList.fromPairs(store.n, buffers);
+    }
 
-                double distance = Math.sqrt(dx * dx + dy * dy);
-                if (distance <= rc + p1.radius + p2.radius){
-                    neighbors.get(p1.id).add(p2);
-                    neighbors.get(p2.id).add(p1);
-                }
+    private <C extends PairConsumer> List<C> scanPairs(IntFunction<C> newConsumer) {
+        if (Mx <= 2 && My <= 2) {
+            // Every cell is adjacent to every other: a tiled all-pairs loop beats walking the stencil
+            int[] permutation = spatialSort == null ? null : spatialSort.getPermutation();
+            return StripedScan.run(pool, BruteForcePairs.tileCount(store.n), newConsumer, (from, to, sink) ->
+                    BruteForcePairs.scan(store, Lx, Ly, rc, periodicX, periodicY, from, to, permutation == null
+                            ? sink
+                            : (i, j, distance) -> sink.accept(permutation[i], permutation[j], distance)));
+        }
+        // On a periodic axis with fewer than 3 cells the wrapped stencil reaches the same cell from both sides
+        boolean halfShell = (!periodicX || Mx >= 3) && (!periodicY || My >= 3);
+        int[] permutation = spatialSort == null ? null : spatialSort.getPermutation();
+        return StripedScan.run(pool, Mx, newConsumer, (from, to, sink) -> {
+            // Sorted storage: translate the indices back to the original order
+            PairConsumer consumer = permutation == null
+                    ? sink
+                    : (i, j, distance) -> sink.accept(permutation[i], permutation[j], distance);
+            if (halfShell && vectorKernel != null) {
+                calculateNeighborsVector(from, to, consumer);
+            } else if (halfShell) {
+                calculateNeighbors(from, to, consumer);
+            } else {
+                calculateNeighborsSmallGrid(from, to, consumer);
             }
+        });
+    }
+
+    /**
+     * Streams every neighbor pair to {@code consumer} without storing them, on the calling thread.
+     * The neighbor list of a previous run is left untouched.
+     *
+     * @return the duration in nanoseconds
+     */
+    long forEachPair(boolean periodicX, boolean periodicY, PairConsumer consumer) {
+        ForkJoinPool configured = pool;
+        pool = null;
+        try {
+            forEachPair(periodicX, periodicY, stripes -> consumer);
+            return lastStreamNanos;
+        } finally {
+            pool = configured;
         }
     }
 
-    long runSimulationWithWalls() {
+    /**
+     * Streams every neighbor pair, in parallel when a pool is configured. Each stripe gets its own
+     * consumer from {@code newConsumer} (called with the number of stripes); the consumers are
+     * returned in stripe order so that the caller can combine them without any locking.
+     */
+    <C extends PairConsumer> List<C> forEachPair(boolean periodicX, boolean periodicY, IntFunction<C> newConsumer) {
         long startTime = System.nanoTime();
-
+        NeighborSearchEvent event = new NeighborSearchEvent();
+        event.begin();
+        long startAllocated = metricsEnabled ? allocatedBytes() : 0;
         if (!checkMValue()) {
-            throw new RuntimeException("Invalid M value. The condition L/M >= rc must be satisfied");
+            throw new RuntimeException("Invalid M value. The condition L/M >= rc + 2r must be satisfied");
         }
+        this.periodicX = periodicX;
+        this.periodicY = periodicY;
         createCells();
+        long cellsTime = System.nanoTime();
         assignParticlesToCells();
-        calculateNeighborsWithWalls();
-
+        long assignTime = System.nanoTime();
+        List<C> consumers = scanPairs(newConsumer);
         long endTime = System.nanoTime();
-        long duration = endTime - startTime;
-        double milliseconds = (double) duration / 1_000_000;
-        // System.out.printf("N: %d, L: %f, M: %d, rc: %f\tDuration(ms): %f\n", N, L, M, rc, milliseconds);
+        lastStreamNanos = endTime - startTime;
+        // Pairs go to the consumers uncounted, so the accepted count is unknown here
+        recordMetrics(startTime, cellsTime, assignTime, endTime, -1, startAllocated, event);
+        return consumers;
+    }
+
+    /**
+     * Labels the connected components of the neighbor graph straight from the pair scan, in parallel
+     * when a pool is configured. The neighbor list of a previous run is left untouched.
+     */
+    Clusters findClusters(boolean periodicX, boolean periodicY) {
+        return Clusters.find(this, particles, pool, periodicX, periodicY);
+    }
 
-        return duration;
+    private void calculateNeighbors(int fromRow, int toRow, PairConsumer consumer) {
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = 0; j < My; j++) {
+                // Check neighbors in current cell
+                checkNeighborsInOwnCell(i, j, consumer);
+
+                // Check neighbors in adjacent cells (top-right L shape and bottom-right)
+                checkNeighborsInCell(i, j, i, j + 1, consumer); // Top
+                checkNeighborsInCell(i, j, i + 1, j + 1, consumer); // Top-right
+                checkNeighborsInCell(i, j, i + 1, j, consumer); // Right
+                checkNeighborsInCell(i, j, i + 1, j - 1, consumer); // Bottom-right
+            }
+        }
     }
 
-    private void calculateNeighborsWithWalls() {
-        for (int i = 0; i < M; i++) {
-            for (int j = 0; j < M; j++) {
-                for (Particle p1 : cells[i][j].particles) {
-                    // Check neighbors in current cell
-                    checkNeighborsInCellWithWalls(p1, i, j);
+    /**
+     * Same stencil as {@link #calculateNeighbors(int, int, PairConsumer)}, but cells that are adjacent
+     * in memory are scanned as one block: the own cell together with the top cell, and the three
+     * cells of the right column.
+     */
+    private void calculateNeighborsVector(int fromRow, int toRow, PairConsumer consumer) {
+        int[] cellStart = cells.cellStart;
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = 0; j < My; j++) {
+                int c = cells.cellIndex(i, j);
+                if (j + 1 < My) {
+                    // Own cell and top cell in one block
+                    vectorKernel.scanTriangle(cellStart[c], cellStart[c + 1], cellStart[c + 2], consumer);
+                } else {
+                    vectorKernel.scanTriangle(cellStart[c], cellStart[c + 1], cellStart[c + 1], consumer);
+                    scanCellVector(c, neighborCell(i, j + 1), consumer); // Top
+                }
 
-                    // Check neighbors in adjacent cells (top-right L shape and bottom-right)
-                    if (j < M - 1) checkNeighborsInCellWithWalls(p1, i, j + 1); // Top
-                    if (i < M - 1 && j < M - 1) checkNeighborsInCellWithWalls(p1, i + 1, j + 1); // Top-right
-                    if (i < M - 1) checkNeighborsInCellWithWalls(p1, i + 1, j); // Right
-                    if (i < M - 1 && j > 0) checkNeighborsInCellWithWalls(p1, i + 1, j - 1); // Bottom-right
+                int right = neighborCell(i + 1, j);
+                if (right >= 0 && j >= 1 && j + 1 < My) {
+                    // Bottom-right, right and top-right in one block
+                    vectorKernel.scanBlock(cellStart[c], cellStart[c + 1], cellStart[right - 1], cellStart[right + 2], consumer);
+                } else {
+                    scanCellVector(c, neighborCell(i + 1, j + 1), consumer); // Top-right
+                    scanCellVector(c, right, consumer); // Right
+                    scanCellVector(c, neighborCell(i + 1, j - 1), consumer); // Bottom-right
                 }
             }
         }
     }
 
-    private void checkNeighborsInCellWithWalls(Particle p1, int cellX, int cellY) {
-        for (Particle p2 : cells[cellX][cellY].particles) {
-            if (p1.id != p2.id) {
-                double dx = Math.abs(p1.x - p2.x);
-                double dy = Math.abs(p1.y - p2.y);
+    private void scanCellVector(int c, int other, PairConsumer consumer) {
+        if (other >= 0) {
+            int[] cellStart = cells.cellStart;
+            vectorKernel.scanBlock(cellStart[c], cellStart[c + 1], cellStart[other], cellStart[other + 1], consumer);
+        }
+    }
 
-                // No periodic boundary conditions applied
-                double distance = Math.sqrt(dx * dx + dy * dy);
-                if (distance <= rc + p1.radius + p2.radius) {
-                    neighbors.get(p1.id).add(p2);
-                    neighbors.get(p2.id).add(p1);
+    private void calculateNeighborsSmallGrid(int fromRow, int toRow, PairConsumer consumer) {
+        int[] visited = new int[8];
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = 0; j < My; j++) {
+                checkNeighborsInOwnCell(i, j, consumer);
+
+                // Visit every distinct adjacent cell once, from the side with the lower index
+                int c = cells.cellIndex(i, j);
+                int count = 0;
+                for (int di = -1; di <= 1; di++) {
+                    for (int dj = -1; dj <= 1; dj++) {
+                        int other = neighborCell(i + di, j + dj);
+                        if (other > c && !contains(visited, count, other)) {
+                            visited[count++] = other;
+                            checkNeighborsBetweenCells(c, other, consumer);
+                        }
+                    }
                 }
             }
         }
     }
 
+    private static boolean contains(int[] values, int count, int value) {
+        for (int k = 0; k < count; k++) {
+            if (values[k] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Index of the cell at the given (possibly out of range) coordinates, or -1 past a wall.
+     */
+    private int neighborCell(int cellX, int cellY) {
+        if (periodicX) {
+            cellX = (cellX + Mx) % Mx;
+        } else if (cellX < 0 || cellX >= Mx) {
+            return -1;
+        }
+        if (periodicY) {
+            cellY = (cellY + My) % My;
+        } else if (cellY < 0 || cellY >= My) {
+            return -1;
+        }
+        return cells.cellIndex(cellX, cellY);
+    }
+
+    private void checkNeighborsInOwnCell(int cellX, int cellY, PairConsumer consumer) {
+        int c = cells.cellIndex(cellX, cellY);
+        int[] order = cells.order;
+        for (int a = cells.cellStart[c]; a < cells.cellStart[c + 1]; a++) {
+            for (int b = a + 1; b < cells.cellStart[c + 1]; b++) {
+                checkPair(order[a], order[b], consumer);
+            }
+        }
+    }
+
+    private void checkNeighborsInCell(int cellX, int cellY, int otherX, int otherY, PairConsumer consumer) {
+        int other = neighborCell(otherX, otherY);
+        if (other >= 0) {
+            checkNeighborsBetweenCells(cells.cellIndex(cellX, cellY), other, consumer);
+        }
+    }
+
+    private void checkNeighborsBetweenCells(int c1, int c2, PairConsumer consumer) {
+        int[] order = cells.order;
+        for (int a = cells.cellStart[c1]; a < cells.cellStart[c1 + 1]; a++) {
+            for (int b = cells.cellStart[c2]; b < cells.cellStart[c2 + 1]; b++) {
+                checkPair(order[a], order[b], consumer);
+            }
+        }
+    }
+
+    private void checkPair(int p1, int p2, PairConsumer consumer) {
+        double dx = Math.abs(store.x[p1] - store.x[p2]);
+        double dy = Math.abs(store.y[p1] - store.y[p2]);
+
+        // Apply periodic boundary conditions on the periodic axes only
+        if (periodicX) dx = Math.min(dx, Lx - dx);
+        if (periodicY) dy = Math.min(dy, Ly - dy);
+
+        double cutoff = rc + store.radius[p1] + store.radius[p2];
+        double distance2 = dx * dx + dy * dy;
+        if (distance2 <= cutoff * cutoff) {
+            consumer.accept(p1, p2, Math.sqrt(distance2));
+        }
+    }
+
+    /**
+     * Neighbors of the last run in compressed-sparse-row form, indexed by position in {@link #getParticles()}.
+     */
+    public NeighborList getNeighborList() {
+        return neighborList;
+    }
+
+    int getM() {
+        return Mx;
+    }
+
+    int getMx() {
+        return Mx;
+    }
+
+    int getMy() {
+        return My;
+    }
+
+    boolean isPeriodicX() {
+        return periodicX;
+    }
+
+    boolean isPeriodicY() {
+        return periodicY;
+    }
+
+    /**
+     * Cost predicted for the current M by the last {@link #autoTuneM}, or {@code NaN} if M was not tuned.
+     */
+    double getPredictedCostNanos() {
+        return predictedCostNanos;
+    }
+
+    /**
+     * Metrics of the last {@link #runSimulation} or {@link #forEachPair} call.
+     */
+    public RunMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
     public Map<Integer, Set<Particle>> getNeighbors() {
-        return neighbors;
+        if (neighborList == null) {
+            neighborList = NeighborList.empty(particles.size());
+        }
+        return new NeighborMapView(particles, neighborList);
     }
 
     public List<Particle> getParticles() {
@@ -0,0 +1,286 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Three-dimensional cell index method. Each axis has its own box length, cell count and boundary
+ * mode (periodic or walls). Cells are stored along a Morton (Z-order) curve so that cells that are
+ * close in space are close in memory, and pairs are found with the 13-cell half-shell stencil plus
+ * the own cell. Results use the same {@link NeighborList} and map view as {@link CellIndexMethod}.
+ */
+public class CellIndexMethod3D {
+
+    // Half of the 26 neighbor offsets: the lexicographically positive ones
+    private static final int[][] HALF_SHELL = halfShell();
+
+    private List<Particle> particles;
+    final double Lx, Ly, Lz;
+    final double rc;
+    final int N;
+    final boolean periodicX, periodicY, periodicZ;
+    private int Mx, My, Mz;
+    private double maxParticleRadius;
+    private ForkJoinPool pool;
+    private long seed = new SplittableRandom().nextLong();
+
+    private ParticleStore store;
+    private int rankMx, rankMy, rankMz; // Grid shape the Morton ordering was built for
+    private int[] rank;     // linear cell index -> position along the Morton curve
+    private int[] cellAt;   // position along the Morton curve -> linear cell index
+    private int[] cellStart;
+    private int[] order;
+    private NeighborList neighborList;
+
+    CellIndexMethod3D(List<Particle> particles, double Lx, double Ly, double Lz, double rc,
+                      boolean periodicX, boolean periodicY, boolean periodicZ) {
+        this.particles = particles;
+        this.Lx = Lx;
+        this.Ly = Ly;
+        this.Lz = Lz;
+        this.rc = rc;
+        this.N = particles.size();
+        this.periodicX = periodicX;
+        this.periodicY = periodicY;
+        this.periodicZ = periodicZ;
+        this.maxParticleRadius = particles.stream().mapToDouble(p -> p.radius).max().orElse(0);
+        generateIdealM();
+    }
+
+    CellIndexMethod3D(double L, int N, double rc, boolean periodic) {
+        this.Lx = L;
+        this.Ly = L;
+        this.Lz = L;
+        this.rc = rc;
+        this.N = N;
+        this.periodicX = periodic;
+        this.periodicY = periodic;
+        this.periodicZ = periodic;
+        generateIdealM();
+    }
+
+    CellIndexMethod3D generateRandomParticles(double radius) {
+        particles = new ParticleGenerator(seed).uniform(N, Lx, Ly, Lz, radius, radius);
+        maxParticleRadius = radius;
+        generateIdealM();
+        return this;
+    }
+
+    /**
+     * Seed for {@link #generateRandomParticles}; without it every instance draws a fresh seed.
+     */
+    CellIndexMethod3D withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    CellIndexMethod3D withParallelism(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    void generateIdealM() {
+        double minCellSize = rc + 2 * maxParticleRadius;
+        Mx = Math.max(1, (int) (Lx / minCellSize));
+        My = Math.max(1, (int) (Ly / minCellSize));
+        Mz = Math.max(1, (int) (Lz / minCellSize));
+    }
+
+    long runSimulation() {
+        long startTime = System.nanoTime();
+
+        createCells();
+        assignParticlesToCells();
+        calculateNeighbors();
+
+        return System.nanoTime() - startTime;
+    }
+
+    private void createCells() {
+        store = ParticleStore.of3D(particles);
+        int cellCount = Mx * My * Mz;
+        if (rank != null && rankMx == Mx && rankMy == My && rankMz == Mz) {
+            return;
+        }
+        // Sort the cells by Morton code once per grid shape
+        long[] codes = new long[cellCount];
+        int k = 0;
+        for (int i = 0; i < Mx; i++) {
+            for (int j = 0; j < My; j++) {
+                for (int l = 0; l < Mz; l++) {
+                    codes[k++] = Morton.encode(i, j, l);
+                }
+            }
+        }
+        Arrays.sort(codes);
+        rank = new int[cellCount];
+        cellAt = new int[cellCount];
+        for (int r = 0; r < cellCount; r++) {
+            long code = codes[r];
+            int linear = linearIndex(Morton.decodeX(code), Morton.decodeY(code), Morton.decodeZ(code));
+            rank[linear] = r;
+            cellAt[r] = linear;
+        }
+        cellStart = new int[cellCount + 1];
+        rankMx = Mx;
+        rankMy = My;
+        rankMz = Mz;
+    }
+
+    private int linearIndex(int cellX, int cellY, int cellZ) {
+        return (cellX * My + cellY) * Mz + cellZ;
+    }
+
+    private void assignParticlesToCells() {
+        int cellCount = Mx * My * Mz;
+        int[] cellOf = new int[store.n];
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < store.n; i++) {
+            int cellX = Math.min(Mx - 1, (int) (store.x[i] / (Lx / Mx)));
+            int cellY = Math.min(My - 1, (int) (store.y[i] / (Ly / My)));
+            int cellZ = Math.min(Mz - 1, (int) (store.z[i] / (Lz / Mz)));
+            cellOf[i] = rank[linearIndex(cellX, cellY, cellZ)];
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        order = new int[store.n];
+        int[] cursor = Arrays.copyOf(cellStart, cellCount);
+        for (int i = 0; i < store.n; i++) {
+            order[cursor[cellOf[i]]++] = i;
+        }
+    }
+
+    private void calculateNeighbors() {
+        // A periodic axis with fewer than 3 cells makes the stencil reach the same cell from both sides
+        boolean halfShell = (!periodicX || Mx >= 3) && (!periodicY || My >= 3) && (!periodicZ || Mz >= 3);
+        neighborList = NeighborList.fromPairs(store.n, StripedScan.run(pool, Mx * My * Mz,
+                stripes -> new PairBuffer(Math.max(16, store.n / stripes)),
+                (from, to, pairs) -> calculateNeighbors(from, to, halfShell, pairs)));
+    }
+
+    private void calculateNeighbors(int fromRank, int toRank, boolean halfShell, PairBuffer pairs) {
+        int[] visited = new int[26];
+        for (int r = fromRank; r < toRank; r++) {
+            int linear = cellAt[r];
+            int cellZ = linear % Mz;
+            int cellY = (linear / Mz) % My;
+            int cellX = linear / (Mz * My);
+
+            // Check neighbors in current cell
+            for (int a = cellStart[r]; a < cellStart[r + 1]; a++) {
+                for (int b = a + 1; b < cellStart[r + 1]; b++) {
+                    checkPair(order[a], order[b], pairs);
+                }
+            }
+
+            if (halfShell) {
+                for (int[] offset : HALF_SHELL) {
+                    int other = neighborRank(cellX + offset[0], cellY + offset[1], cellZ + offset[2]);
+                    if (other >= 0) {
+                        checkNeighborsBetweenCells(r, other, pairs);
+                    }
+                }
+            } else {
+                // Visit every distinct adjacent cell once, from the side with the lower rank
+                int count = 0;
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dz = -1; dz <= 1; dz++) {
+                            int other = neighborRank(cellX + dx, cellY + dy, cellZ + dz);
+                            if (other > r && !contains(visited, count, other)) {
+                                visited[count++] = other;
+                                checkNeighborsBetweenCells(r, other, pairs);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int k = 0; k < count; k++) {
+            if (values[k] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rank of the cell at the given (possibly out of range) coordinates, or -1 past a wall.
+     */
+    private int neighborRank(int cellX, int cellY, int cellZ) {
+        cellX = wrap(cellX, Mx, periodicX);
+        cellY = wrap(cellY, My, periodicY);
+        cellZ = wrap(cellZ, Mz, periodicZ);
+        if (cellX < 0 || cellY < 0 || cellZ < 0) {
+            return -1;
+        }
+        return rank[linearIndex(cellX, cellY, cellZ)];
+    }
+
+    private static int wrap(int cell, int M, boolean periodic) {
+        if (periodic) {
+            return (cell + M) % M;
+        }
+        return cell >= 0 && cell < M ? cell : -1;
+    }
+
+    private void checkNeighborsBetweenCells(int c1, int c2, PairBuffer pairs) {
+        for (int a = cellStart[c1]; a < cellStart[c1 + 1]; a++) {
+            for (int b = cellStart[c2]; b < cellStart[c2 + 1]; b++) {
+                checkPair(order[a], order[b], pairs);
+            }
+        }
+    }
+
+    private void checkPair(int p1, int p2, PairBuffer pairs) {
+        double dx = Math.abs(store.x[p1] - store.x[p2]);
+        double dy = Math.abs(store.y[p1] - store.y[p2]);
+        double dz = Math.abs(store.z[p1] - store.z[p2]);
+
+        // Apply periodic boundary conditions on the periodic axes only
+        if (periodicX) dx = Math.min(dx, Lx - dx);
+        if (periodicY) dy = Math.min(dy, Ly - dy);
+        if (periodicZ) dz = Math.min(dz, Lz - dz);
+
+        double cutoff = rc + store.radius[p1] + store.radius[p2];
+        if (dx * dx + dy * dy + dz * dz <= cutoff * cutoff) {
+            pairs.add(p1, p2);
+        }
+    }
+
+    private static int[][] halfShell() {
+        List<int[]> offsets = new ArrayList<>(13);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx > 0 || (dx == 0 && dy > 0) || (dx == 0 && dy == 0 && dz > 0)) {
+                        offsets.add(new int[]{dx, dy, dz});
+                    }
+                }
+            }
+        }
+        return offsets.toArray(new int[0][]);
+    }
+
+    public NeighborList getNeighborList() {
+        return neighborList;
+    }
+
+    public Map<Integer, Set<Particle>> getNeighbors() {
+        if (neighborList == null) {
+            neighborList = NeighborList.empty(particles.size());
+        }
+        return new NeighborMapView(particles, neighborList);
+    }
+
+    public List<Particle> getParticles() {
+        return particles;
+    }
+
+    int[] getM() {
+        return new int[]{Mx, My, Mz};
+    }
+}
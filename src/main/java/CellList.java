@@ -0,0 +1,68 @@
+/**
+ * Cell list built with a counting sort: {@code order} holds the particle indices grouped by cell and
+ * {@code cellStart[c] .. cellStart[c + 1]} is the slice belonging to cell {@code c = cx * My + cy}.
+ */
+class CellList {
+    final double Lx;
+    final double Ly;
+    final int Mx;
+    final int My;
+    final double cellSizeX;
+    final double cellSizeY;
+    final int[] cellStart;
+    int[] order;
+    int[] cellOf;
+
+    CellList(double Lx, double Ly, int Mx, int My) {
+        this(Lx, Ly, Mx, My, null);
+    }
+
+    /**
+     * A new grid that takes over the per-particle arrays of {@code previous}, if any.
+     */
+    CellList(double Lx, double Ly, int Mx, int My, CellList previous) {
+        this.Lx = Lx;
+        this.Ly = Ly;
+        this.Mx = Mx;
+        this.My = My;
+        this.cellSizeX = Lx / Mx;
+        this.cellSizeY = Ly / My;
+        this.cellStart = new int[Mx * My + 1];
+        this.order = previous == null ? new int[0] : previous.order;
+        this.cellOf = previous == null ? new int[0] : previous.cellOf;
+    }
+
+    int cellCount() {
+        return Mx * My;
+    }
+
+    int cellIndex(int cellX, int cellY) {
+        return cellX * My + cellY;
+    }
+
+    void build(double[] x, double[] y, int n) {
+        if (order.length < n) {
+            order = new int[n];
+            cellOf = new int[n];
+        }
+        java.util.Arrays.fill(cellStart, 0);
+
+        // Count particles per cell (shifted by one so the prefix sum yields start offsets)
+        for (int i = 0; i < n; i++) {
+            int cellX = Math.min(Mx - 1, (int) (x[i] / cellSizeX));
+            int cellY = Math.min(My - 1, (int) (y[i] / cellSizeY));
+            int c = cellIndex(cellX, cellY);
+            cellOf[i] = c;
+            cellStart[c + 1]++;
+        }
+        for (int c = 0; c < cellCount(); c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // Scatter indices into their cell slices
+        int[] cursor = java.util.Arrays.copyOf(cellStart, cellCount());
+        for (int i = 0; i < n; i++) {
+            order[cursor[cellOf[i]]++] = i;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Connected components of the neighbor graph, built by a concurrent union-find that is fed straight
+ * from the pair scan, so neither the neighbor map nor the CSR lists are ever materialized.
+ * <p>
+ * Clusters are numbered by their lowest particle index, so labels do not depend on thread scheduling.
+ * On a periodic axis a cluster percolates when it connects to one of its own periodic images. Pairs
+ * that cross the boundary are set aside during the scan and joined afterwards with a union-find that
+ * tracks the image offset of every cluster; a join that closes a loop with a nonzero offset wraps the box.
+ */
+public class Clusters {
+    final int[] labels;      // Cluster of each particle, by index in the particle list
+    final int[] sizes;
+    final boolean[] percolatesX;
+    final boolean[] percolatesY;
+
+    private Clusters(int[] labels, int[] sizes, boolean[] percolatesX, boolean[] percolatesY) {
+        this.labels = labels;
+        this.sizes = sizes;
+        this.percolatesX = percolatesX;
+        this.percolatesY = percolatesY;
+    }
+
+    static Clusters find(CellIndexMethod md, List<Particle> particles, ForkJoinPool pool,
+                         boolean periodicX, boolean periodicY) {
+        int n = particles.size();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        run(pool, n, i -> parent.set(i, i));
+
+        // Coordinates are only needed to tell pairs that cross a periodic boundary
+        double[] x = periodicX ? new double[n] : null;
+        double[] y = periodicY ? new double[n] : null;
+        if (periodicX || periodicY) {
+            run(pool, n, i -> {
+                Particle p = particles.get(i);
+                if (x != null) x[i] = p.x;
+                if (y != null) y[i] = p.y;
+            });
+        }
+        double halfX = md.Lx / 2;
+        double halfY = md.Ly / 2;
+        List<PairBuffer> wrapped = md.forEachPair(periodicX, periodicY, stripes -> new PairBuffer() {
+            @Override
+            public void accept(int i, int j, double distance) {
+                if ((x != null && Math.abs(x[i] - x[j]) > halfX)
+                        || (y != null && Math.abs(y[i] - y[j]) > halfY)) {
+                    add(i, j);
+                } else {
+                    union(parent, i, j);
+                }
+            }
+        });
+
+        // Flatten to roots, then number the roots in index order
+        int[] labels = new int[n];
+        run(pool, n, i -> labels[i] = root(parent, i));
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (labels[i] == i) {
+                parent.set(i, count++);
+            }
+        }
+        run(pool, n, i -> labels[i] = parent.get(labels[i]));
+
+        boolean[] percolatesX = new boolean[count];
+        boolean[] percolatesY = new boolean[count];
+        int wrappedPairs = 0;
+        for (PairBuffer pairs : wrapped) {
+            wrappedPairs += pairs.size();
+        }
+        if (wrappedPairs > 0) {
+            count = joinAcrossBoundaries(labels, count, wrapped, x, y, halfX, halfY, percolatesX, percolatesY, pool);
+        }
+
+        int[] sizes = new int[count];
+        for (int label : labels) {
+            sizes[label]++;
+        }
+        return new Clusters(labels, sizes,
+                Arrays.copyOf(percolatesX, count), Arrays.copyOf(percolatesY, count));
+    }
+
+    /**
+     * Merges the in-box clusters joined by boundary-crossing pairs, relabels the particles and fills in
+     * the percolation flags of the merged clusters.
+     *
+     * @return the number of clusters after merging
+     */
+    private static int joinAcrossBoundaries(int[] labels, int count, List<PairBuffer> wrapped, double[] x,
+                                            double[] y, double halfX, double halfY, boolean[] percolatesX,
+                                            boolean[] percolatesY, ForkJoinPool pool) {
+        // Offset of each cluster from its parent in box images; every in-box cluster starts at its own root
+        int[] parent = new int[count];
+        int[] offsetX = new int[count];
+        int[] offsetY = new int[count];
+        for (int c = 0; c < count; c++) {
+            parent[c] = c;
+        }
+        int[] found = new int[3];
+        for (PairBuffer pairs : wrapped) {
+            for (int k = 0; k < pairs.size(); k++) {
+                int i = pairs.first(k);
+                int j = pairs.second(k);
+                // The image of j next to i is shifted by (sx, sy) boxes
+                int sx = x == null ? 0 : x[j] - x[i] > halfX ? -1 : x[i] - x[j] > halfX ? 1 : 0;
+                int sy = y == null ? 0 : y[j] - y[i] > halfY ? -1 : y[i] - y[j] > halfY ? 1 : 0;
+                findWithOffset(parent, offsetX, offsetY, labels[i], found);
+                int rootI = found[0], offXI = found[1], offYI = found[2];
+                findWithOffset(parent, offsetX, offsetY, labels[j], found);
+                int rootJ = found[0], offXJ = found[1], offYJ = found[2];
+                int dx = offXI + sx - offXJ;
+                int dy = offYI + sy - offYJ;
+                if (rootI == rootJ) {
+                    // A loop through the boundary that does not close in the same image wraps the box
+                    percolatesX[rootI] |= dx != 0;
+                    percolatesY[rootI] |= dy != 0;
+                } else if (rootI < rootJ) {
+                    parent[rootJ] = rootI;
+                    offsetX[rootJ] = dx;
+                    offsetY[rootJ] = dy;
+                    percolatesX[rootI] |= percolatesX[rootJ];
+                    percolatesY[rootI] |= percolatesY[rootJ];
+                } else {
+                    parent[rootI] = rootJ;
+                    offsetX[rootI] = -dx;
+                    offsetY[rootI] = -dy;
+                    percolatesX[rootJ] |= percolatesX[rootI];
+                    percolatesY[rootJ] |= percolatesY[rootI];
+                }
+            }
+        }
+
+        // Roots keep their lowest index, so renumbering them in order keeps labels sorted by first particle
+        int[] renumber = new int[count];
+        int merged = 0;
+        for (int c = 0; c < count; c++) {
+            findWithOffset(parent, offsetX, offsetY, c, found);
+            if (found[0] == c) {
+                percolatesX[merged] = percolatesX[c];
+                percolatesY[merged] = percolatesY[c];
+                renumber[c] = merged++;
+            } else {
+                renumber[c] = renumber[found[0]];
+            }
+        }
+        run(pool, labels.length, i -> labels[i] = renumber[labels[i]]);
+        return merged;
+    }
+
+    /**
+     * Root of {@code c} and the offset of {@code c} from it, compressing the path on the way.
+     */
+    private static void findWithOffset(int[] parent, int[] offsetX, int[] offsetY, int c, int[] found) {
+        int root = c;
+        int sumX = 0;
+        int sumY = 0;
+        while (parent[root] != root) {
+            sumX += offsetX[root];
+            sumY += offsetY[root];
+            root = parent[root];
+        }
+        // Point the path at the root, converting each offset to be relative to it
+        int node = c;
+        int remainingX = sumX;
+        int remainingY = sumY;
+        while (parent[node] != node) {
+            int next = parent[node];
+            int stepX = offsetX[node];
+            int stepY = offsetY[node];
+            parent[node] = root;
+            offsetX[node] = remainingX;
+            offsetY[node] = remainingY;
+            remainingX -= stepX;
+            remainingY -= stepY;
+            node = next;
+        }
+        found[0] = root;
+        found[1] = sumX;
+        found[2] = sumY;
+    }
+
+    /**
+     * Lock-free union: the larger root is linked under the smaller one, retrying if another thread
+     * re-linked it first.
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = root(parent, a);
+            b = root(parent, b);
+            if (a == b) return;
+            if (a < b) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            if (parent.compareAndSet(a, a, b)) return;
+        }
+    }
+
+    private static int root(AtomicIntegerArray parent, int i) {
+        int p = parent.get(i);
+        while (p != i) {
+            // Path halving; a lost race only leaves the path a little longer
+            int grandparent = parent.get(p);
+            if (grandparent != p) {
+                parent.compareAndSet(i, p, grandparent);
+            }
+            i = grandparent;
+            p = parent.get(i);
+        }
+        return i;
+    }
+
+    private static void run(ForkJoinPool pool, int n, IntConsumer action) {
+        if (pool == null) {
+            for (int i = 0; i < n; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(action)).join();
+        }
+    }
+
+    public int count() {
+        return sizes.length;
+    }
+
+    public int[] getLabels() {
+        return labels;
+    }
+
+    public int[] getSizes() {
+        return sizes;
+    }
+
+    public int largestSize() {
+        int largest = 0;
+        for (int size : sizes) {
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    /**
+     * Whether the cluster wraps the box along a periodic axis; always {@code false} with walls.
+     */
+    public boolean percolates(int cluster) {
+        return percolatesX[cluster] || percolatesY[cluster];
+    }
+
+    /**
+     * Whether any cluster wraps the box.
+     */
+    public boolean percolates() {
+        for (int c = 0; c < sizes.length; c++) {
+            if (percolates(c)) return true;
+        }
+        return false;
+    }
+}
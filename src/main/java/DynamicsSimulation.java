@@ -0,0 +1,345 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Off-lattice time stepping on top of the neighbor search. Positions live in the
+ * {@link VerletNeighborList}'s particle store, so cells and the pair list are reused between steps
+ * and only rebuilt when particles have moved far enough.
+ * <p>
+ * Two integrators are available:
+ * <ul>
+ *     <li>Vicsek: constant speed, each heading becomes the mean heading of the neighbors within
+ *     {@code rc} (itself included) plus uniform noise in {@code [-eta/2, eta/2]};</li>
+ *     <li>velocity Verlet with a harmonic repulsion {@code k * overlap} between overlapping disks.</li>
+ * </ul>
+ */
+public class DynamicsSimulation {
+    enum Integrator { VICSEK, VELOCITY_VERLET }
+
+    @FunctionalInterface
+    interface SnapshotWriter {
+        void write(int step, DynamicsSimulation simulation) throws IOException;
+    }
+
+    private final List<Particle> particles;
+    final double L;
+    final double rc;
+    final boolean periodic;
+    private final VerletNeighborList verletList;
+    private final ParticleStore store;
+    private final double[] vx;
+    private final double[] vy;
+    private final double[] ax;
+    private final double[] ay;
+
+    private Integrator integrator = Integrator.VICSEK;
+    private double speed = 0.03;
+    private double eta = 0.1;
+    private double stiffness = 100;
+    private double mass = 1;
+    private long seed = System.nanoTime();
+    private boolean parallel;
+    private int snapshotEvery;
+    private SnapshotWriter snapshotWriter;
+    private SpatialSort spatialSort;
+    private int sortEvery;
+    // Index in the particle list of the particle in each storage slot
+    private final int[] particleIndex;
+
+    private int step;
+    private long runNanos;
+    private int runSteps;
+
+    DynamicsSimulation(List<Particle> particles, double L, double rc, double skin, boolean periodic) {
+        this.particles = particles;
+        this.L = L;
+        this.rc = rc;
+        this.periodic = periodic;
+        this.verletList = new VerletNeighborList(particles, L, rc, skin, periodic);
+        this.store = verletList.getStore();
+        int n = store.n;
+        this.vx = new double[n];
+        this.vy = new double[n];
+        this.ax = new double[n];
+        this.ay = new double[n];
+        this.particleIndex = new int[n];
+        for (int i = 0; i < n; i++) {
+            particleIndex[i] = i;
+            vx[i] = particles.get(i).vx;
+            vy[i] = particles.get(i).vy;
+        }
+    }
+
+    DynamicsSimulation withVicsek(double speed, double eta) {
+        this.integrator = Integrator.VICSEK;
+        this.speed = speed;
+        this.eta = eta;
+        // Particles without a velocity start with a random heading
+        Random random = new Random(seed);
+        for (int i = 0; i < store.n; i++) {
+            if (vx[i] == 0 && vy[i] == 0) {
+                double theta = random.nextDouble() * 2 * Math.PI;
+                vx[i] = speed * Math.cos(theta);
+                vy[i] = speed * Math.sin(theta);
+            }
+        }
+        return this;
+    }
+
+    DynamicsSimulation withSoftDisks(double stiffness, double mass) {
+        this.integrator = Integrator.VELOCITY_VERLET;
+        this.stiffness = stiffness;
+        this.mass = mass;
+        computeForces();
+        return this;
+    }
+
+    DynamicsSimulation withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Splits the per-particle updates over the common fork-join pool.
+     */
+    DynamicsSimulation withParallelism(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Sorts the particle storage along {@code order} now and again every {@code every} steps, so that
+     * neighbors stay close in memory as particles drift; {@code null} turns it off.
+     */
+    DynamicsSimulation withSpatialSort(SpatialSort.Order order, int every) {
+        if (every < 1) {
+            throw new IllegalArgumentException("Sort interval must be at least one step");
+        }
+        this.spatialSort = order == null ? null : new SpatialSort(order);
+        this.sortEvery = every;
+        if (spatialSort != null) {
+            sortParticles();
+        }
+        return this;
+    }
+
+    DynamicsSimulation withSnapshots(int every, SnapshotWriter writer) {
+        if (every < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least one step");
+        }
+        this.snapshotEvery = every;
+        this.snapshotWriter = writer;
+        return this;
+    }
+
+    /**
+     * Snapshot writer producing {@code prefix_000042.bin} files in the {@link BinaryParticleFile} format.
+     */
+    static SnapshotWriter binarySnapshots(String prefix) {
+        return (step, simulation) -> BinaryParticleFile.write(Path.of(String.format("%s_%06d.bin", prefix, step)),
+                simulation.store, null, simulation.L, simulation.L, simulation.rc,
+                simulation.verletList.getM(), simulation.verletList.getM(),
+                simulation.periodic ? BinaryParticleFile.PERIODIC_X | BinaryParticleFile.PERIODIC_Y : 0);
+    }
+
+    /**
+     * Advances {@code steps} steps of size {@code dt}.
+     *
+     * @return the duration in nanoseconds
+     */
+    long run(int steps, double dt) throws IOException {
+        long startTime = System.nanoTime();
+        for (int k = 0; k < steps; k++) {
+            if (integrator == Integrator.VICSEK) {
+                vicsekStep(dt);
+            } else {
+                velocityVerletStep(dt);
+            }
+            step++;
+            if (spatialSort != null && step % sortEvery == 0) {
+                sortParticles();
+            }
+            if (snapshotWriter != null && step % snapshotEvery == 0) {
+                snapshotWriter.write(step, this);
+            }
+        }
+        long duration = System.nanoTime() - startTime;
+        runNanos += duration;
+        runSteps += steps;
+        return duration;
+    }
+
+    private void sortParticles() {
+        int[] permutation = verletList.spatialPermutation(spatialSort);
+        int n = store.n;
+        SpatialSort.permute(vx, permutation, n);
+        SpatialSort.permute(vy, permutation, n);
+        SpatialSort.permute(ax, permutation, n);
+        SpatialSort.permute(ay, permutation, n);
+        SpatialSort.permute(particleIndex, permutation, n);
+        verletList.reorder(permutation);
+    }
+
+    private void vicsekStep(double dt) {
+        NeighborList neighbors = verletList.getNeighborList();
+        double[] theta = ax;
+        long stepSeed = seed * 31 + step;
+        forEachParticle(i -> {
+            double sumX = vx[i];
+            double sumY = vy[i];
+            for (int k = neighbors.offsets[i]; k < neighbors.offsets[i + 1]; k++) {
+                int j = neighbors.ids[k];
+                if (withinCutoff(i, j)) {
+                    sumX += vx[j];
+                    sumY += vy[j];
+                }
+            }
+            // Noise is hashed from (seed, step, particle id) so the result depends neither on thread
+            // scheduling nor on the storage order
+            double noise = (uniform(stepSeed * 1_000_003 + store.ids[i]) - 0.5) * eta;
+            theta[i] = Math.atan2(sumY, sumX) + noise;
+        });
+        forEachParticle(i -> {
+            vx[i] = speed * Math.cos(theta[i]);
+            vy[i] = speed * Math.sin(theta[i]);
+            move(i, vx[i] * dt, vy[i] * dt);
+        });
+        verletList.update();
+    }
+
+    private void velocityVerletStep(double dt) {
+        forEachParticle(i -> {
+            vx[i] += 0.5 * ax[i] * dt;
+            vy[i] += 0.5 * ay[i] * dt;
+            move(i, vx[i] * dt, vy[i] * dt);
+        });
+        verletList.update();
+        computeForces();
+        forEachParticle(i -> {
+            vx[i] += 0.5 * ax[i] * dt;
+            vy[i] += 0.5 * ay[i] * dt;
+        });
+    }
+
+    /**
+     * Each particle sums the forces from its own neighbor row, so rows can be processed in parallel
+     * without any shared writes.
+     */
+    private void computeForces() {
+        NeighborList neighbors = verletList.getNeighborList();
+        forEachParticle(i -> {
+            double fx = 0;
+            double fy = 0;
+            for (int k = neighbors.offsets[i]; k < neighbors.offsets[i + 1]; k++) {
+                int j = neighbors.ids[k];
+                double dx = separation(store.x[i] - store.x[j]);
+                double dy = separation(store.y[i] - store.y[j]);
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                double overlap = store.radius[i] + store.radius[j] - distance;
+                if (overlap > 0 && distance > 0) {
+                    fx += stiffness * overlap * dx / distance;
+                    fy += stiffness * overlap * dy / distance;
+                }
+            }
+            ax[i] = fx / mass;
+            ay[i] = fy / mass;
+        });
+    }
+
+    /**
+     * SplitMix64 finalizer mapped to {@code [0, 1)}.
+     */
+    private static double uniform(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    private boolean withinCutoff(int i, int j) {
+        double dx = separation(store.x[i] - store.x[j]);
+        double dy = separation(store.y[i] - store.y[j]);
+        double cutoff = rc + store.radius[i] + store.radius[j];
+        return dx * dx + dy * dy <= cutoff * cutoff;
+    }
+
+    private double separation(double d) {
+        return periodic ? d - L * Math.rint(d / L) : d;
+    }
+
+    private void move(int i, double dx, double dy) {
+        double x = store.x[i] + dx;
+        double y = store.y[i] + dy;
+        if (periodic) {
+            x -= L * Math.floor(x / L);
+            y -= L * Math.floor(y / L);
+        } else {
+            // Reflect off the walls
+            if (x < 0 || x >= L) {
+                vx[i] = -vx[i];
+                x = Math.min(Math.max(x < 0 ? -x : 2 * L - x, 0), Math.nextDown(L));
+            }
+            if (y < 0 || y >= L) {
+                vy[i] = -vy[i];
+                y = Math.min(Math.max(y < 0 ? -y : 2 * L - y, 0), Math.nextDown(L));
+            }
+        }
+        store.x[i] = x;
+        store.y[i] = y;
+    }
+
+    private void forEachParticle(java.util.function.IntConsumer action) {
+        IntStream range = IntStream.range(0, store.n);
+        (parallel ? range.parallel() : range).forEach(action);
+    }
+
+    /**
+     * Copies positions and velocities back into the {@link Particle} objects.
+     */
+    void syncParticles() {
+        for (int i = 0; i < store.n; i++) {
+            Particle p = particles.get(particleIndex[i]);
+            p.x = store.x[i];
+            p.y = store.y[i];
+            p.vx = vx[i];
+            p.vy = vy[i];
+        }
+    }
+
+    /**
+     * Vicsek order parameter: the modulus of the mean velocity divided by the speed.
+     */
+    double orderParameter() {
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < store.n; i++) {
+            sumX += vx[i];
+            sumY += vy[i];
+        }
+        return Math.hypot(sumX, sumY) / (store.n * speed);
+    }
+
+    public double getStepsPerSecond() {
+        return runNanos == 0 ? 0 : runSteps / (runNanos / 1e9);
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    ParticleStore getStore() {
+        return store;
+    }
+
+    VerletNeighborList getVerletList() {
+        return verletList;
+    }
+
+    List<Particle> getParticles() {
+        return particles;
+    }
+}
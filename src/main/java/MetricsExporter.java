@@ -0,0 +1,63 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes {@link RunMetrics} as CSV (one row per run, header written when the file is new) or as JSON.
+ */
+final class MetricsExporter {
+    static final String CSV_HEADER = "N,Mx,My,PeriodicX,PeriodicY,CreateCells_ns,AssignParticles_ns,"
+            + "CalculateNeighbors_ns,Total_ns,DistanceEvaluations,AcceptedPairs,EmptyCells,AllocatedBytes,Occupancy\n";
+
+    private MetricsExporter() {
+    }
+
+    static void appendCsv(Path path, List<RunMetrics> runs) throws IOException {
+        boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+        try (Writer writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (isNew) {
+                writer.write(CSV_HEADER);
+            }
+            for (RunMetrics m : runs) {
+                writer.write(String.format(Locale.ROOT, "%d,%d,%d,%b,%b,%d,%d,%d,%d,%d,%d,%d,%d,%s\n",
+                        m.N, m.Mx, m.My, m.periodicX, m.periodicY, m.createCellsNanos, m.assignParticlesNanos,
+                        m.calculateNeighborsNanos, m.totalNanos, m.distanceEvaluations, m.acceptedPairs,
+                        m.emptyCells, m.allocatedBytes, histogram(m, " ")));
+            }
+        }
+    }
+
+    static void writeJson(Path path, List<RunMetrics> runs) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("[\n");
+            for (int k = 0; k < runs.size(); k++) {
+                writer.write(toJson(runs.get(k)));
+                writer.write(k + 1 < runs.size() ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        }
+    }
+
+    static String toJson(RunMetrics m) {
+        return String.format(Locale.ROOT, "{\"N\": %d, \"Mx\": %d, \"My\": %d, \"periodicX\": %b, \"periodicY\": %b, "
+                        + "\"phases\": {\"createCells\": %d, \"assignParticles\": %d, \"calculateNeighbors\": %d, \"total\": %d}, "
+                        + "\"distanceEvaluations\": %d, \"acceptedPairs\": %d, \"emptyCells\": %d, \"allocatedBytes\": %d, "
+                        + "\"occupancyHistogram\": [%s]}",
+                m.N, m.Mx, m.My, m.periodicX, m.periodicY, m.createCellsNanos, m.assignParticlesNanos,
+                m.calculateNeighborsNanos, m.totalNanos, m.distanceEvaluations, m.acceptedPairs, m.emptyCells,
+                m.allocatedBytes, histogram(m, ", "));
+    }
+
+    private static String histogram(RunMetrics m, String separator) {
+        if (m.occupancyHistogram == null) {
+            return "";
+        }
+        return String.join(separator, Arrays.stream(m.occupancyHistogram).mapToObj(Long::toString).toList());
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Morton (Z-order) codes for cell coordinates of up to 21 bits per axis in 3D, 32 bits in 2D.
+ */
+final class Morton {
+    private Morton() {
+    }
+
+    static long encode(int x, int y, int z) {
+        return spread(x) | (spread(y) << 1) | (spread(z) << 2);
+    }
+
+    static long encode(int x, int y) {
+        return spread2(x) | (spread2(y) << 1);
+    }
+
+    static int decodeX(long code) {
+        return compact(code);
+    }
+
+    static int decodeY(long code) {
+        return compact(code >>> 1);
+    }
+
+    static int decodeZ(long code) {
+        return compact(code >>> 2);
+    }
+
+    // Inserts two zero bits between each of the low 21 bits
+    private static long spread(int value) {
+        long v = value & 0x1fffffL;
+        v = (v | v << 32) & 0x1f00000000ffffL;
+        v = (v | v << 16) & 0x1f0000ff0000ffL;
+        v = (v | v << 8) & 0x100f00f00f00f00fL;
+        v = (v | v << 4) & 0x10c30c30c30c30c3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+
+    // Inserts one zero bit between each of the 32 bits
+    private static long spread2(int value) {
+        long v = value & 0xffffffffL;
+        v = (v | v << 16) & 0x0000ffff0000ffffL;
+        v = (v | v << 8) & 0x00ff00ff00ff00ffL;
+        v = (v | v << 4) & 0x0f0f0f0f0f0f0f0fL;
+        v = (v | v << 2) & 0x3333333333333333L;
+        v = (v | v << 1) & 0x5555555555555555L;
+        return v;
+    }
+
+    private static int compact(long code) {
+        long v = code & 0x1249249249249249L;
+        v = (v | v >>> 2) & 0x10c30c30c30c30c3L;
+        v = (v | v >>> 4) & 0x100f00f00f00f00fL;
+        v = (v | v >>> 8) & 0x1f0000ff0000ffL;
+        v = (v | v >>> 16) & 0x1f00000000ffffL;
+        v = (v | v >>> 32) & 0x1fffffL;
+        return (int) v;
+    }
+}
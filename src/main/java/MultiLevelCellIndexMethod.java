@@ -0,0 +1,251 @@
+import java.util.*;
+
+/**
+ * Cell index method for polydisperse systems. A single grid sized by the largest particle
+ * ({@code rc + 2 * maxRadius}) degrades towards brute force when radii span orders of magnitude, so
+ * particles are split into size classes (radius ratio of at most 2 within a class) and every class is
+ * binned on its own grid of side {@code rc + 2 * classMaxRadius}.
+ * <p>
+ * Pairs inside a class use the usual half-shell stencil on the class grid. Pairs across classes are
+ * found by querying, for each particle of the smaller class, the cells of the larger class grid that
+ * its search window overlaps; that grid's cells are at least as wide as the window's half-width.
+ */
+public class MultiLevelCellIndexMethod {
+    private static final int MAX_CLASSES = 16;
+    private static final long MAX_CELLS_PER_PARTICLE = 2;
+
+    private final List<Particle> particles;
+    final double Lx;
+    final double Ly;
+    final double rc;
+    final int N;
+    private boolean periodicX;
+    private boolean periodicY;
+    private List<SizeClass> classes;
+    private NeighborList neighborList;
+
+    private static final class SizeClass {
+        final ParticleStore store;
+        final int[] global;
+        final double maxRadius;
+        final CellList cells;
+
+        SizeClass(ParticleStore store, int[] global, double maxRadius, CellList cells) {
+            this.store = store;
+            this.global = global;
+            this.maxRadius = maxRadius;
+            this.cells = cells;
+        }
+    }
+
+    MultiLevelCellIndexMethod(List<Particle> particles, double Lx, double Ly, double rc) {
+        this.particles = particles;
+        this.Lx = Lx;
+        this.Ly = Ly;
+        this.rc = rc;
+        this.N = particles.size();
+    }
+
+    MultiLevelCellIndexMethod(List<Particle> particles, double L, double rc) {
+        this(particles, L, L, rc);
+    }
+
+    long runSimulation() {
+        return runSimulation(true, true);
+    }
+
+    long runSimulationWithWalls() {
+        return runSimulation(false, false);
+    }
+
+    long runSimulation(boolean periodicX, boolean periodicY) {
+        long startTime = System.nanoTime();
+
+        this.periodicX = periodicX;
+        this.periodicY = periodicY;
+        createSizeClasses();
+        PairBuffer pairs = new PairBuffer(N);
+        for (int a = 0; a < classes.size(); a++) {
+            calculateNeighborsInClass(classes.get(a), pairs);
+            // Classes are ordered by decreasing radius: query every larger class from this one
+            for (int b = 0; b < a; b++) {
+                calculateNeighborsAcrossClasses(classes.get(a), classes.get(b), pairs);
+            }
+        }
+        neighborList = NeighborList.fromPairs(N, pairs);
+
+        return System.nanoTime() - startTime;
+    }
+
+    private void createSizeClasses() {
+        double maxRadius = 0;
+        for (Particle p : particles) {
+            maxRadius = Math.max(maxRadius, p.radius);
+        }
+
+        // Class k holds radii in (maxRadius / 2^(k+1), maxRadius / 2^k]; zero radii go to the last class
+        int[] classOf = new int[N];
+        int[] counts = new int[MAX_CLASSES];
+        for (int i = 0; i < N; i++) {
+            double r = particles.get(i).radius;
+            int k = r <= 0 ? MAX_CLASSES - 1 : (int) Math.floor(Math.log(maxRadius / r) / Math.log(2));
+            classOf[i] = Math.min(MAX_CLASSES - 1, Math.max(0, k));
+            counts[classOf[i]]++;
+        }
+
+        ParticleStore[] stores = new ParticleStore[MAX_CLASSES];
+        int[][] globals = new int[MAX_CLASSES][];
+        for (int k = 0; k < MAX_CLASSES; k++) {
+            stores[k] = new ParticleStore(counts[k]);
+            globals[k] = new int[counts[k]];
+        }
+        int[] fill = new int[MAX_CLASSES];
+        for (int i = 0; i < N; i++) {
+            Particle p = particles.get(i);
+            int k = classOf[i];
+            int local = fill[k]++;
+            stores[k].x[local] = p.x;
+            stores[k].y[local] = p.y;
+            stores[k].radius[local] = p.radius;
+            stores[k].ids[local] = p.id;
+            globals[k][local] = i;
+        }
+
+        classes = new ArrayList<>();
+        for (int k = 0; k < MAX_CLASSES; k++) {
+            if (counts[k] == 0) {
+                continue;
+            }
+            double classMaxRadius = stores[k].maxRadius();
+            int Mx = Math.max(1, (int) (Lx / (rc + 2 * classMaxRadius)));
+            int My = Math.max(1, (int) (Ly / (rc + 2 * classMaxRadius)));
+            // A sparse class of tiny particles would otherwise get a huge, mostly empty grid
+            long maxCells = Math.max(16, MAX_CELLS_PER_PARTICLE * counts[k]);
+            if ((long) Mx * My > maxCells) {
+                double shrink = Math.sqrt((double) Mx * My / maxCells);
+                Mx = Math.max(1, (int) (Mx / shrink));
+                My = Math.max(1, (int) (My / shrink));
+            }
+            CellList cells = new CellList(Lx, Ly, Mx, My);
+            cells.build(stores[k].x, stores[k].y, stores[k].n);
+            classes.add(new SizeClass(stores[k], globals[k], classMaxRadius, cells));
+        }
+    }
+
+    private void calculateNeighborsInClass(SizeClass sizeClass, PairBuffer pairs) {
+        CellList cells = sizeClass.cells;
+        int[] order = cells.order;
+        int[] visited = new int[8];
+        for (int i = 0; i < cells.Mx; i++) {
+            for (int j = 0; j < cells.My; j++) {
+                int c = cells.cellIndex(i, j);
+
+                // Check neighbors in current cell
+                for (int a = cells.cellStart[c]; a < cells.cellStart[c + 1]; a++) {
+                    for (int b = a + 1; b < cells.cellStart[c + 1]; b++) {
+                        checkPair(sizeClass, order[a], sizeClass, order[b], pairs);
+                    }
+                }
+
+                // Every distinct adjacent cell once, from the side with the lower index
+                int count = 0;
+                for (int di = -1; di <= 1; di++) {
+                    for (int dj = -1; dj <= 1; dj++) {
+                        int other = neighborCell(cells, i + di, j + dj);
+                        if (other > c && !contains(visited, count, other)) {
+                            visited[count++] = other;
+                            for (int a = cells.cellStart[c]; a < cells.cellStart[c + 1]; a++) {
+                                for (int b = cells.cellStart[other]; b < cells.cellStart[other + 1]; b++) {
+                                    checkPair(sizeClass, order[a], sizeClass, order[b], pairs);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void calculateNeighborsAcrossClasses(SizeClass small, SizeClass large, PairBuffer pairs) {
+        CellList cells = large.cells;
+        int[] order = cells.order;
+        int[] visited = new int[9];
+        for (int p = 0; p < small.store.n; p++) {
+            // Only the cells the search window overlaps: up to 3 x 3, usually 2 x 2 since the window
+            // is about half a cell wide when the small radius is negligible
+            double reach = rc + small.store.radius[p] + large.maxRadius;
+            int fromX = (int) Math.floor((small.store.x[p] - reach) / cells.cellSizeX);
+            int fromY = (int) Math.floor((small.store.y[p] - reach) / cells.cellSizeY);
+            int toX = Math.min(fromX + 2, (int) Math.floor((small.store.x[p] + reach) / cells.cellSizeX));
+            int toY = Math.min(fromY + 2, (int) Math.floor((small.store.y[p] + reach) / cells.cellSizeY));
+            int count = 0;
+            for (int cellX = fromX; cellX <= toX; cellX++) {
+                for (int cellY = fromY; cellY <= toY; cellY++) {
+                    int other = neighborCell(cells, cellX, cellY);
+                    if (other >= 0 && !contains(visited, count, other)) {
+                        visited[count++] = other;
+                        for (int b = cells.cellStart[other]; b < cells.cellStart[other + 1]; b++) {
+                            checkPair(small, p, large, order[b], pairs);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int neighborCell(CellList cells, int cellX, int cellY) {
+        if (periodicX) {
+            cellX = (cellX + cells.Mx) % cells.Mx;
+        } else if (cellX < 0 || cellX >= cells.Mx) {
+            return -1;
+        }
+        if (periodicY) {
+            cellY = (cellY + cells.My) % cells.My;
+        } else if (cellY < 0 || cellY >= cells.My) {
+            return -1;
+        }
+        return cells.cellIndex(cellX, cellY);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int k = 0; k < count; k++) {
+            if (values[k] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkPair(SizeClass c1, int p1, SizeClass c2, int p2, PairBuffer pairs) {
+        double dx = Math.abs(c1.store.x[p1] - c2.store.x[p2]);
+        double dy = Math.abs(c1.store.y[p1] - c2.store.y[p2]);
+
+        // Apply periodic boundary conditions on the periodic axes only
+        if (periodicX) dx = Math.min(dx, Lx - dx);
+        if (periodicY) dy = Math.min(dy, Ly - dy);
+
+        double cutoff = rc + c1.store.radius[p1] + c2.store.radius[p2];
+        if (dx * dx + dy * dy <= cutoff * cutoff) {
+            pairs.add(c1.global[p1], c2.global[p2]);
+        }
+    }
+
+    public NeighborList getNeighborList() {
+        return neighborList;
+    }
+
+    public Map<Integer, Set<Particle>> getNeighbors() {
+        if (neighborList == null) {
+            neighborList = NeighborList.empty(N);
+        }
+        return new NeighborMapView(particles, neighborList);
+    }
+
+    public List<Particle> getParticles() {
+        return particles;
+    }
+
+    int getClassCount() {
+        return classes == null ? 0 : classes.size();
+    }
+}
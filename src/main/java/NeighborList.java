@@ -0,0 +1,73 @@
+/**
+ * Neighbor lists in compressed-sparse-row form: the neighbors of particle {@code i} are
+ * {@code ids[offsets[i]] .. ids[offsets[i + 1] - 1]}, given as indices into the particle list.
+ */
+public class NeighborList {
+    final int[] offsets;
+    final int[] ids;
+
+    NeighborList(int[] offsets, int[] ids) {
+        this.offsets = offsets;
+        this.ids = ids;
+    }
+
+    static NeighborList empty(int n) {
+        return new NeighborList(new int[n + 1], new int[0]);
+    }
+
+    /**
+     * Builds the symmetric CSR structure from unique unordered pairs: every pair is written into
+     * both rows, keeping the order in which the pairs were produced (buffers are read in sequence).
+     */
+    static NeighborList fromPairs(int n, PairBuffer... parts) {
+        return fromPairs(n, java.util.Arrays.asList(parts));
+    }
+
+    static NeighborList fromPairs(int n, java.util.List<PairBuffer> parts) {
+        int[] offsets = new int[n + 1];
+        for (PairBuffer pairs : parts) {
+            for (int k = 0; k < pairs.size(); k++) {
+                offsets[pairs.first(k) + 1]++;
+                offsets[pairs.second(k) + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] ids = new int[offsets[n]];
+        int[] cursor = java.util.Arrays.copyOf(offsets, n);
+        for (PairBuffer pairs : parts) {
+            for (int k = 0; k < pairs.size(); k++) {
+                int i = pairs.first(k);
+                int j = pairs.second(k);
+                ids[cursor[i]++] = j;
+                ids[cursor[j]++] = i;
+            }
+        }
+        return new NeighborList(offsets, ids);
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public int degree(int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    public int neighbor(int i, int k) {
+        return ids[offsets[i] + k];
+    }
+
+    public int pairCount() {
+        return ids.length / 2;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.*;
+
+/**
+ * Read-only {@code Map<Integer, Set<Particle>>} view over a {@link NeighborList}, keyed by particle
+ * id. Nothing is copied: sets are materialized lazily as they are iterated.
+ */
+class NeighborMapView extends AbstractMap<Integer, Set<Particle>> {
+    private final List<Particle> particles;
+    private final NeighborList neighborList;
+    private Map<Integer, Integer> indexById;
+
+    NeighborMapView(List<Particle> particles, NeighborList neighborList) {
+        this.particles = particles;
+        this.neighborList = neighborList;
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof Integer id)) {
+            return -1;
+        }
+        // Fast path: particles generated by this project have id == index
+        if (id >= 0 && id < particles.size() && particles.get(id).id == id) {
+            return id;
+        }
+        if (indexById == null) {
+            Map<Integer, Integer> index = new HashMap<>(particles.size() * 2);
+            for (int i = 0; i < particles.size(); i++) {
+                index.put(particles.get(i).id, i);
+            }
+            indexById = index;
+        }
+        Integer index = indexById.get(id);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public Set<Particle> get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : new NeighborSet(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return particles.size();
+    }
+
+    @Override
+    public Set<Entry<Integer, Set<Particle>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, Set<Particle>>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < particles.size();
+                    }
+
+                    @Override
+                    public Entry<Integer, Set<Particle>> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = next++;
+                        return new SimpleImmutableEntry<>(particles.get(index).id, new NeighborSet(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return particles.size();
+            }
+        };
+    }
+
+    private class NeighborSet extends AbstractSet<Particle> {
+        private final int index;
+
+        NeighborSet(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Iterator<Particle> iterator() {
+            return new Iterator<>() {
+                private int k = neighborList.offsets[index];
+
+                @Override
+                public boolean hasNext() {
+                    return k < neighborList.offsets[index + 1];
+                }
+
+                @Override
+                public Particle next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return particles.get(neighborList.ids[k++]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return neighborList.degree(index);
+        }
+    }
+}
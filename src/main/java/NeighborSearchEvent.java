@@ -0,0 +1,33 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event emitted for every neighbor search while a recording with this event enabled is running,
+ * e.g. {@code -XX:StartFlightRecording:settings=profile}. Costs next to nothing otherwise.
+ */
+@Name("tp1.NeighborSearch")
+@Label("Neighbor Search")
+@Category("Cell Index Method")
+class NeighborSearchEvent extends Event {
+    @Label("Particles")
+    int particles;
+
+    @Label("Cells X")
+    int cellsX;
+
+    @Label("Cells Y")
+    int cellsY;
+
+    @Label("Distance Evaluations")
+    long distanceEvaluations;
+
+    @Label("Accepted Pairs")
+    long acceptedPairs;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
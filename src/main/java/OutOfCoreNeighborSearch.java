@@ -0,0 +1,471 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Neighbor search over a {@link BinaryParticleFile} that does not fit in memory. The box is split into
+ * tiles; each tile is searched on its own together with a halo of width {@code rc + 2 * maxRadius} copied
+ * from its neighbors (wrapped across periodic boundaries), and its pairs are appended to
+ * {@code pairs-<tx>-<ty>.bin} in the output directory as soon as it completes. Pair files already in
+ * that directory are deleted first.
+ * <p>
+ * The input is streamed three times in bounded chunks: once for the largest radius, once to count the
+ * records of every tile, and once to spill them into one scratch file where each tile is a contiguous
+ * region. Tiles are then searched in parallel, but a tile only starts once its estimated footprint fits
+ * in what is left of the memory budget.
+ * <p>
+ * A pair file holds little-endian {@code int id1, int id2, double distance} records with particle ids,
+ * not file positions. Every pair appears in exactly one file: a tile reports pairs of its own particles,
+ * and a pair with a halo particle only when its own particle has the smaller id.
+ * <p>
+ * The file format counts particles and ids with 32-bit ints, so one input holds at most
+ * {@code Integer.MAX_VALUE} particles; larger datasets must be split across files. Each tile, halo
+ * included, must also fit in Java arrays; {@link #run} rejects a tile grid that is too coarse for that.
+ */
+final class OutOfCoreNeighborSearch {
+    private static final int RECORD_BYTES = 2 * Integer.BYTES + 3 * Double.BYTES; // id, home, x, y, radius
+    private static final int PAIR_BYTES = 2 * Integer.BYTES + Double.BYTES;
+    private static final int PAIR_BUFFER_BYTES = 1 << 20;
+    // Heap bytes per record while a tile is searched: Particle object, list slot, store, cell list, flags
+    private static final long TILE_BYTES_PER_RECORD = 160;
+    private static final int MIN_CHUNK = 1 << 12;
+    private static final int MAX_CHUNK = 1 << 20;
+    private static final int MAX_TILE_RECORDS = Integer.MAX_VALUE - 8;
+
+    private final Path input;
+    private final double rc;
+    private final boolean periodicX;
+    private final boolean periodicY;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int tilesX;
+    private int tilesY;
+
+    /**
+     * Summary of a run.
+     */
+    record Result(int tilesX, int tilesY, long particles, long haloRecords, long pairs, long maxTileRecords,
+                  long nanos) {
+    }
+
+    OutOfCoreNeighborSearch(Path input, double rc, boolean periodicX, boolean periodicY) {
+        this.input = input;
+        this.rc = rc;
+        this.periodicX = periodicX;
+        this.periodicY = periodicY;
+    }
+
+    /**
+     * Bytes that chunk buffers and concurrently searched tiles may occupy; half the max heap by default.
+     */
+    OutOfCoreNeighborSearch withMemoryBudget(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        this.memoryBudget = bytes;
+        return this;
+    }
+
+    OutOfCoreNeighborSearch withThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Fixes the tile grid instead of deriving it from the memory budget.
+     */
+    OutOfCoreNeighborSearch withTiles(int tilesX, int tilesY) {
+        if (tilesX < 1 || tilesY < 1) {
+            throw new IllegalArgumentException("Tile counts must be positive");
+        }
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+        return this;
+    }
+
+    Result run(Path outputDir) throws IOException {
+        long startTime = System.nanoTime();
+        Files.createDirectories(outputDir);
+        // Pair files of an earlier run with a different tile grid would otherwise be read back as well
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(outputDir, "pairs-*.bin")) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+        Path spill = Files.createTempFile(outputDir, "tiles-", ".spill");
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            BinaryParticleFile.Header header = BinaryParticleFile.readHeader(in);
+            int n = header.n();
+            int chunk = (int) Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, memoryBudget / (8L * RECORD_BYTES)));
+            Grid grid = grid(header, n, maxRadius(in, header, chunk));
+
+            long[] counts = countRecords(in, header, grid, chunk);
+            for (int t = 0; t < counts.length; t++) {
+                if (counts[t] > MAX_TILE_RECORDS) {
+                    throw new IllegalArgumentException("Tile " + t / grid.tilesY + "-" + t % grid.tilesY
+                            + " holds " + counts[t] + " particles, more than an array can index;"
+                            + " use more tiles or a smaller memory budget");
+                }
+            }
+            long[] offsets = new long[counts.length + 1];
+            for (int t = 0; t < counts.length; t++) {
+                offsets[t + 1] = offsets[t] + counts[t];
+            }
+            spillRecords(in, header, grid, chunk, offsets, spill);
+
+            long pairs = searchTiles(grid, offsets, spill, outputDir);
+            long maxTileRecords = 0;
+            for (long count : counts) {
+                maxTileRecords = Math.max(maxTileRecords, count);
+            }
+            return new Result(grid.tilesX, grid.tilesY, n, offsets[counts.length] - n, pairs, maxTileRecords,
+                    System.nanoTime() - startTime);
+        } finally {
+            Files.deleteIfExists(spill);
+        }
+    }
+
+    /**
+     * Streams every pair written by {@link #run} to {@code consumer}, with particle ids in place of indices.
+     *
+     * @return the number of pairs read
+     */
+    static long readPairs(Path outputDir, PairConsumer consumer) throws IOException {
+        long pairs = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(outputDir, "pairs-*.bin")) {
+            for (Path file : files) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    long perChunk = (long) (Integer.MAX_VALUE / PAIR_BYTES) * PAIR_BYTES;
+                    for (long position = 0; position < size; position += perChunk) {
+                        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                Math.min(perChunk, size - position));
+                        buffer.order(ByteOrder.LITTLE_ENDIAN);
+                        while (buffer.hasRemaining()) {
+                            consumer.accept(buffer.getInt(), buffer.getInt(), buffer.getDouble());
+                            pairs++;
+                        }
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Tile layout: tiles of {@code width x height} with a halo of {@code halo} around each.
+     */
+    private record Grid(int tilesX, int tilesY, double width, double height, double halo, double Lx, double Ly) {
+    }
+
+    private Grid grid(BinaryParticleFile.Header header, int n, double maxRadius) {
+        double Lx = header.Lx();
+        double Ly = header.Ly();
+        double halo = rc + 2 * maxRadius;
+        // A wider halo would let one pair be within range through two images of the box
+        if ((periodicX && Lx <= 2 * halo) || (periodicY && Ly <= 2 * halo)) {
+            throw new IllegalArgumentException("Periodic box side must exceed 2 * (rc + 2 * maxRadius)");
+        }
+        int tx = tilesX;
+        int ty = tilesY;
+        if (tx == 0) {
+            // Keep every tile, halo included, well inside its share of the budget when all threads are busy
+            long perTile = Math.max(1, memoryBudget / (2L * threads * TILE_BYTES_PER_RECORD));
+            double tiles = Math.max(1, Math.ceil((double) n / perTile));
+            tx = (int) Math.max(1, Math.ceil(Math.sqrt(tiles * Lx / Ly)));
+            ty = (int) Math.max(1, Math.ceil(tiles / tx));
+        }
+        // Tiles at least a halo wide, so that a halo only reaches the adjacent tiles
+        tx = (int) Math.max(1, Math.min(tx, Math.floor(Lx / halo)));
+        ty = (int) Math.max(1, Math.min(ty, Math.floor(Ly / halo)));
+        return new Grid(tx, ty, Lx / tx, Ly / ty, halo, Lx, Ly);
+    }
+
+    private static double maxRadius(FileChannel in, BinaryParticleFile.Header header, int chunk) throws IOException {
+        Chunk buffers = new Chunk(chunk);
+        double maxRadius = 0;
+        // Steps by count, so from never passes n and cannot overflow near Integer.MAX_VALUE
+        for (int from = 0, count; from < header.n(); from += count) {
+            count = Math.min(chunk, header.n() - from);
+            buffers.read(in, header, from, count);
+            for (int i = 0; i < count; i++) {
+                maxRadius = Math.max(maxRadius, buffers.radius[i]);
+            }
+        }
+        return maxRadius;
+    }
+
+    private long[] countRecords(FileChannel in, BinaryParticleFile.Header header, Grid grid, int chunk)
+            throws IOException {
+        long[] counts = new long[grid.tilesX * grid.tilesY];
+        Chunk buffers = new Chunk(chunk);
+        Placement placement = new Placement();
+        for (int from = 0, count; from < header.n(); from += count) {
+            count = Math.min(chunk, header.n() - from);
+            buffers.read(in, header, from, count);
+            for (int i = 0; i < count; i++) {
+                place(grid, buffers.x[i], buffers.y[i], placement);
+                for (int k = 0; k < placement.count; k++) {
+                    counts[placement.tiles[k]]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private void spillRecords(FileChannel in, BinaryParticleFile.Header header, Grid grid, int chunk,
+                              long[] offsets, Path spill) throws IOException {
+        int tiles = offsets.length - 1;
+        // Per-tile write buffers share a quarter of the budget
+        int bufferRecords = (int) Math.max(16, Math.min(1 << 11, memoryBudget / 4 / tiles / RECORD_BYTES));
+        ByteBuffer[] buffers = new ByteBuffer[tiles];
+        long[] written = offsets.clone();
+        Chunk chunkBuffers = new Chunk(chunk);
+        Placement placement = new Placement();
+        try (FileChannel out = FileChannel.open(spill, StandardOpenOption.WRITE)) {
+            for (int from = 0, count; from < header.n(); from += count) {
+                count = Math.min(chunk, header.n() - from);
+                chunkBuffers.read(in, header, from, count);
+                for (int i = 0; i < count; i++) {
+                    place(grid, chunkBuffers.x[i], chunkBuffers.y[i], placement);
+                    for (int k = 0; k < placement.count; k++) {
+                        int t = placement.tiles[k];
+                        ByteBuffer buffer = buffers[t];
+                        if (buffer == null) {
+                            int capacity = (int) Math.min(bufferRecords, offsets[t + 1] - offsets[t]);
+                            buffer = buffers[t] = ByteBuffer.allocate(capacity * RECORD_BYTES)
+                                    .order(ByteOrder.LITTLE_ENDIAN);
+                        }
+                        // Coordinates relative to the tile's halo corner, unwrapped across periodic edges
+                        int tx = t / grid.tilesY;
+                        int ty = t % grid.tilesY;
+                        buffer.putInt(chunkBuffers.ids[i]).putInt(k == 0 ? 1 : 0)
+                                .putDouble(chunkBuffers.x[i] + placement.shiftX[k] - (tx * grid.width - grid.halo))
+                                .putDouble(chunkBuffers.y[i] + placement.shiftY[k] - (ty * grid.height - grid.halo))
+                                .putDouble(chunkBuffers.radius[i]);
+                        if (!buffer.hasRemaining()) {
+                            written[t] += flush(out, buffer, written[t]);
+                        }
+                    }
+                }
+            }
+            for (int t = 0; t < tiles; t++) {
+                if (buffers[t] != null) {
+                    written[t] += flush(out, buffers[t], written[t]);
+                }
+            }
+        }
+    }
+
+    private static long flush(FileChannel out, ByteBuffer buffer, long record) throws IOException {
+        buffer.flip();
+        long records = buffer.remaining() / RECORD_BYTES;
+        long position = record * RECORD_BYTES;
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+        buffer.clear();
+        return records;
+    }
+
+    /**
+     * Tiles whose halo-extended region holds the point, home tile first, with the shift that unwraps it
+     * into that tile's frame.
+     */
+    private static final class Placement {
+        final int[] tiles = new int[9];
+        final double[] shiftX = new double[9];
+        final double[] shiftY = new double[9];
+        int count;
+    }
+
+    private void place(Grid grid, double x, double y, Placement placement) {
+        int homeX = Math.min(grid.tilesX - 1, Math.max(0, (int) (x / grid.width)));
+        int homeY = Math.min(grid.tilesY - 1, Math.max(0, (int) (y / grid.height)));
+        placement.tiles[0] = homeX * grid.tilesY + homeY;
+        placement.shiftX[0] = 0;
+        placement.shiftY[0] = 0;
+        placement.count = 1;
+        for (int dx = -1; dx <= 1; dx++) {
+            int tx = homeX + dx;
+            double shiftX = 0;
+            if (tx < 0 || tx >= grid.tilesX) {
+                if (!periodicX) continue;
+                shiftX = tx < 0 ? grid.Lx : -grid.Lx;
+                tx = Math.floorMod(tx, grid.tilesX);
+            }
+            double px = x + shiftX;
+            if (px < tx * grid.width - grid.halo || px >= (tx + 1) * grid.width + grid.halo) continue;
+            for (int dy = -1; dy <= 1; dy++) {
+                if (dx == 0 && dy == 0) continue;
+                int ty = homeY + dy;
+                double shiftY = 0;
+                if (ty < 0 || ty >= grid.tilesY) {
+                    if (!periodicY) continue;
+                    shiftY = ty < 0 ? grid.Ly : -grid.Ly;
+                    ty = Math.floorMod(ty, grid.tilesY);
+                }
+                double py = y + shiftY;
+                if (py < ty * grid.height - grid.halo || py >= (ty + 1) * grid.height + grid.halo) continue;
+                int k = placement.count++;
+                placement.tiles[k] = tx * grid.tilesY + ty;
+                placement.shiftX[k] = shiftX;
+                placement.shiftY[k] = shiftY;
+            }
+        }
+    }
+
+    private long searchTiles(Grid grid, long[] offsets, Path spill, Path outputDir) throws IOException {
+        int tiles = offsets.length - 1;
+        // Budget in KiB permits; a tile larger than the whole budget waits until it can run alone
+        int budgetKiB = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget >> 10));
+        Semaphore budget = new Semaphore(budgetKiB);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tiles));
+        try (FileChannel channel = FileChannel.open(spill, StandardOpenOption.READ)) {
+            List<Future<Long>> results = new ArrayList<>(tiles);
+            for (int t = 0; t < tiles; t++) {
+                int tile = t;
+                long records = offsets[t + 1] - offsets[t];
+                int permits = (int) Math.min(budgetKiB,
+                        (records * TILE_BYTES_PER_RECORD + PAIR_BUFFER_BYTES + 1023) >> 10);
+                results.add(executor.submit(() -> {
+                    budget.acquire(permits);
+                    try {
+                        return searchTile(grid, tile, channel, offsets[tile], records, outputDir);
+                    } finally {
+                        budget.release(permits);
+                    }
+                }));
+            }
+            long pairs = 0;
+            for (Future<Long> result : results) {
+                pairs += result.get();
+            }
+            return pairs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching tiles", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw new RuntimeException("Tile search failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long searchTile(Grid grid, int tile, FileChannel spill, long offset, long records, Path outputDir)
+            throws IOException {
+        int n = Math.toIntExact(records);
+        int[] ids = new int[n];
+        boolean[] home = new boolean[n];
+        List<Particle> particles = new ArrayList<>(n);
+        MappedByteBuffer buffer = n == 0 ? null : spill.map(FileChannel.MapMode.READ_ONLY,
+                offset * RECORD_BYTES, records * RECORD_BYTES);
+        if (buffer != null) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        for (int i = 0; i < n; i++) {
+            ids[i] = buffer.getInt();
+            home[i] = buffer.getInt() != 0;
+            particles.add(new Particle(ids[i], buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+        }
+
+        int tx = tile / grid.tilesY;
+        int ty = tile % grid.tilesY;
+        Path file = outputDir.resolve("pairs-" + tx + "-" + ty + ".bin");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            PairWriter writer = new PairWriter(out, ids, home);
+            if (n > 0) {
+                // The halo-extended tile is searched as a walled box of its own
+                new CellIndexMethod(particles, grid.width + 2 * grid.halo, grid.height + 2 * grid.halo, rc)
+                        .forEachPair(false, false, writer);
+            }
+            writer.flush();
+            return writer.pairs;
+        }
+    }
+
+    /**
+     * Keeps the pairs a tile owns and appends them to its file.
+     */
+    private static final class PairWriter implements PairConsumer {
+        private final FileChannel out;
+        private final int[] ids;
+        private final boolean[] home;
+        private final ByteBuffer buffer = ByteBuffer.allocate(PAIR_BUFFER_BYTES / PAIR_BYTES * PAIR_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long pairs;
+
+        PairWriter(FileChannel out, int[] ids, boolean[] home) {
+            this.out = out;
+            this.ids = ids;
+            this.home = home;
+        }
+
+        @Override
+        public void accept(int i, int j, double distance) {
+            int a = ids[i];
+            int b = ids[j];
+            // A particle and its own periodic image are not a pair; halo pairs belong to another tile
+            if (a == b || (!home[i] && !home[j])) return;
+            if (home[i] != home[j] && (home[i] ? a > b : b > a)) return;
+            buffer.putInt(a).putInt(b).putDouble(distance);
+            pairs++;
+            if (!buffer.hasRemaining()) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reusable arrays for one chunk of the input file.
+     */
+    private static final class Chunk {
+        final int[] ids;
+        final double[] x;
+        final double[] y;
+        final double[] radius;
+
+        Chunk(int size) {
+            ids = new int[size];
+            x = new double[size];
+            y = new double[size];
+            radius = new double[size];
+        }
+
+        void read(FileChannel in, BinaryParticleFile.Header header, int from, int count) throws IOException {
+            BinaryParticleFile.readRange(in, header, from, count, ids, x, y, radius);
+        }
+    }
+}
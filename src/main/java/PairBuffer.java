@@ -0,0 +1,50 @@
+import java.util.Arrays;
+
+/**
+ * Growable buffer of (i, j) particle index pairs, each stored once.
+ */
+class PairBuffer implements PairConsumer {
+    private int[] first;
+    private int[] second;
+    private int size;
+
+    PairBuffer() {
+        this(64);
+    }
+
+    PairBuffer(int capacity) {
+        first = new int[Math.max(1, capacity)];
+        second = new int[Math.max(1, capacity)];
+    }
+
+    void add(int i, int j) {
+        if (size == first.length) {
+            first = Arrays.copyOf(first, size * 2);
+            second = Arrays.copyOf(second, size * 2);
+        }
+        first[size] = i;
+        second[size] = j;
+        size++;
+    }
+
+    @Override
+    public void accept(int i, int j, double distance) {
+        add(i, j);
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int first(int k) {
+        return first[k];
+    }
+
+    int second(int k) {
+        return second[k];
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Receives neighbor pairs as they are found, straight from the inner loop of the search. Each
+ * unordered pair is reported once; {@code i} and {@code j} are indices into the particle list and
+ * {@code distance} is the center-to-center (minimum image) distance.
+ */
+@FunctionalInterface
+public interface PairConsumer {
+    void accept(int i, int j, double distance);
+}
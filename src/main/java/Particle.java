@@ -1,5 +1,6 @@
 public class Particle {
-    double x, y, radius;
+    double x, y, z, radius;
+    double vx, vy;
     int id;
 
     public Particle(int id, double x, double y, double radius) {
@@ -15,4 +16,12 @@ public class Particle {
         this.y = y;
         this.radius = 0;
     }
+
+    public Particle(int id, double x, double y, double z, double radius) {
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.radius = radius;
+    }
 }
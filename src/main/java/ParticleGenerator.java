@@ -0,0 +1,273 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded initial conditions. The same seed always yields the same particles, whatever the number of
+ * threads: uniform placement is split into fixed-size chunks, each with its own {@link SplittableRandom}
+ * split from the seed in chunk order.
+ */
+class ParticleGenerator {
+    private static final int CHUNK = 1 << 16;
+    // Hard-disk placement closes a cell after this many rejected candidates in it
+    private static final int CELL_ATTEMPTS = 16;
+    // Side of a hard-disk placement tile, in cells
+    private static final int TILE = 64;
+
+    private final long seed;
+
+    ParticleGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Uniform positions in {@code [0, Lx) x [0, Ly)} with radii drawn log-uniformly from
+     * {@code [minRadius, maxRadius]}, or uniformly when {@code minRadius} is 0; overlaps are allowed.
+     */
+    List<Particle> uniform(int N, double Lx, double Ly, double minRadius, double maxRadius) {
+        return uniform(N, Lx, Ly, 0, minRadius, maxRadius);
+    }
+
+    /**
+     * Uniform positions in {@code [0, Lx) x [0, Ly) x [0, Lz)}, radii as in the 2D version. With
+     * {@code Lz == 0} no z is drawn, so 2D particles are the same as from the 2D overload.
+     */
+    List<Particle> uniform(int N, double Lx, double Ly, double Lz, double minRadius, double maxRadius) {
+        if (minRadius < 0 || minRadius > maxRadius) {
+            throw new IllegalArgumentException("Radii must satisfy 0 <= minRadius <= maxRadius");
+        }
+        Particle[] result = new Particle[N];
+        int chunks = (N + CHUNK - 1) / CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] generators = new SplittableRandom[chunks];
+        for (int k = 0; k < chunks; k++) {
+            generators[k] = root.split();
+        }
+        IntStream.range(0, chunks).parallel().forEach(k -> {
+            SplittableRandom random = generators[k];
+            int to = Math.min(N, (k + 1) * CHUNK);
+            for (int i = k * CHUNK; i < to; i++) {
+                double x = random.nextDouble() * Lx;
+                double y = random.nextDouble() * Ly;
+                double z = Lz > 0 ? random.nextDouble() * Lz : 0;
+                double radius;
+                if (minRadius == maxRadius) {
+                    radius = maxRadius;
+                } else if (minRadius == 0) {
+                    // A log-uniform draw needs a positive lower bound
+                    radius = maxRadius * random.nextDouble();
+                } else {
+                    radius = minRadius * Math.pow(maxRadius / minRadius, random.nextDouble());
+                }
+                result[i] = new Particle(i, x, y, z, radius);
+            }
+        });
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Random sequential placement of {@code N} non-overlapping disks of the given radius. The box is
+     * covered by cells of side at most {@code r * sqrt(2)}, small enough that a cell holds at most one
+     * centre, so each candidate is checked against the 5 x 5 surrounding cells only.
+     * <p>
+     * Cells are grouped into tiles of about {@link #TILE} x {@link #TILE} cells, each filled with its
+     * share of the disks by its own generator. Tiles are coloured like a 2 x 2 checkerboard; tiles of
+     * one colour never touch, so they are filled in parallel and each one works in cache-sized arrays.
+     * Disk ids are therefore grouped by tile.
+     * <p>
+     * Within a tile candidates are drawn inside a random cell that is still open. A cell is closed once
+     * it holds a centre, once it lies entirely within {@code 2r} of a placed centre, or after
+     * {@link #CELL_ATTEMPTS} rejected candidates; the last rule slightly biases the placement against
+     * crowded spots but keeps the nearly jammed phase from stalling. Packings cannot go past the random
+     * sequential adsorption limit (a packing fraction of about 0.547).
+     *
+     * @throws IllegalArgumentException if the disks cannot all be placed
+     */
+    List<Particle> nonOverlapping(int N, double Lx, double Ly, double radius, boolean periodic) {
+        if (radius <= 0) {
+            return uniform(N, Lx, Ly, radius, radius);
+        }
+        int Mx = Math.max(1, (int) Math.ceil(Lx / (radius * Math.sqrt(2))));
+        int My = Math.max(1, (int) Math.ceil(Ly / (radius * Math.sqrt(2))));
+        if ((long) Mx * My < N) {
+            throw new IllegalArgumentException("Cannot fit " + N + " disks of radius " + radius
+                    + " in a " + Lx + " x " + Ly + " box");
+        }
+        return new HardDiskPlacement(N, Lx, Ly, radius, periodic, Mx, My).place(new SplittableRandom(seed));
+    }
+
+    /**
+     * Tiles per axis: tiles are at least 3 cells wide so that the 5 x 5 blocks of two same-coloured
+     * tiles never overlap, and periodic axes need an even count for the colouring to survive the wrap.
+     */
+    private static int tileCount(int M, boolean periodic) {
+        int tiles = Math.max(1, (M + TILE / 2) / TILE);
+        if (periodic && tiles > 1 && tiles % 2 == 1) {
+            tiles++;
+        }
+        if (M / tiles < 3) {
+            tiles = periodic ? (M >= 6 ? 2 : 1) : Math.max(1, M / 3);
+        }
+        return tiles;
+    }
+
+    private static class HardDiskPlacement {
+        private final int N;
+        private final double Lx;
+        private final double Ly;
+        private final double radius;
+        private final double diameter2;
+        private final boolean periodic;
+        private final int Mx;
+        private final int My;
+        private final double cellSizeX;
+        private final double cellSizeY;
+        private final int[] occupant;
+        private final double[] x;
+        private final double[] y;
+
+        HardDiskPlacement(int N, double Lx, double Ly, double radius, boolean periodic, int Mx, int My) {
+            this.N = N;
+            this.Lx = Lx;
+            this.Ly = Ly;
+            this.radius = radius;
+            this.diameter2 = 4 * radius * radius;
+            this.periodic = periodic;
+            this.Mx = Mx;
+            this.My = My;
+            this.cellSizeX = Lx / Mx;
+            this.cellSizeY = Ly / My;
+            this.occupant = new int[Mx * My];
+            this.x = new double[N];
+            this.y = new double[N];
+            Arrays.fill(occupant, -1);
+        }
+
+        List<Particle> place(SplittableRandom root) {
+            int tilesX = tileCount(Mx, periodic);
+            int tilesY = tileCount(My, periodic);
+            int tiles = tilesX * tilesY;
+            // Each tile's share of N is proportional to its cell count; ids are handed out in tile order
+            int[] first = new int[tiles + 1];
+            long cellsSoFar = 0;
+            for (int t = 0; t < tiles; t++) {
+                int tx = t / tilesY;
+                int ty = t % tilesY;
+                cellsSoFar += (long) (bound(tx + 1, Mx, tilesX) - bound(tx, Mx, tilesX))
+                        * (bound(ty + 1, My, tilesY) - bound(ty, My, tilesY));
+                first[t + 1] = (int) (N * cellsSoFar / ((long) Mx * My));
+            }
+            SplittableRandom[] generators = new SplittableRandom[tiles];
+            for (int t = 0; t < tiles; t++) {
+                generators[t] = root.split();
+            }
+            for (int color = 0; color < 4; color++) {
+                int colorX = color / 2;
+                int colorY = color % 2;
+                IntStream.range(0, tiles)
+                        .filter(t -> (t / tilesY) % 2 == colorX && (t % tilesY) % 2 == colorY)
+                        .parallel()
+                        .forEach(t -> fillTile(t / tilesY, t % tilesY, tilesX, tilesY,
+                                first[t], first[t + 1], generators[t]));
+            }
+
+            Particle[] result = new Particle[N];
+            for (int i = 0; i < N; i++) {
+                result[i] = new Particle(i, x[i], y[i], radius);
+            }
+            return Arrays.asList(result);
+        }
+
+        private static int bound(int tile, int M, int tiles) {
+            return (int) ((long) tile * M / tiles);
+        }
+
+        private void fillTile(int tx, int ty, int tilesX, int tilesY, int from, int to, SplittableRandom random) {
+            int fromX = bound(tx, Mx, tilesX);
+            int fromY = bound(ty, My, tilesY);
+            int width = bound(tx + 1, Mx, tilesX) - fromX;
+            int height = bound(ty + 1, My, tilesY) - fromY;
+            // Open cells, as tile-local indices, are kept in the prefix [0, open) of candidates
+            int[] candidates = new int[width * height];
+            int[] positionOf = new int[width * height];
+            byte[] failures = new byte[width * height];
+            for (int c = 0; c < candidates.length; c++) {
+                candidates[c] = c;
+                positionOf[c] = c;
+            }
+            int[] open = {candidates.length};
+
+            for (int i = from; i < to; ) {
+                if (open[0] == 0) {
+                    throw new IllegalArgumentException("Could not place " + N
+                            + " non-overlapping disks of radius " + radius + " in a " + Lx + " x " + Ly + " box");
+                }
+                int local = candidates[random.nextInt(open[0])];
+                int cx = fromX + local / height;
+                int cy = fromY + local % height;
+                double px = Math.min((cx + random.nextDouble()) * cellSizeX, Math.nextDown(Lx));
+                double py = Math.min((cy + random.nextDouble()) * cellSizeY, Math.nextDown(Ly));
+                if (isFree(px, py, cx, cy)) {
+                    x[i] = px;
+                    y[i] = py;
+                    occupant[cx * My + cy] = i++;
+                    // Close the tile cells whose farthest corner is within 2r of the new centre; with
+                    // cells of side at most r * sqrt(2) these all lie in the surrounding 5 x 5 block
+                    for (int ox = Math.max(fromX, cx - 2); ox <= Math.min(fromX + width - 1, cx + 2); ox++) {
+                        double fx = Math.max(Math.abs(ox * cellSizeX - px), Math.abs((ox + 1) * cellSizeX - px));
+                        for (int oy = Math.max(fromY, cy - 2); oy <= Math.min(fromY + height - 1, cy + 2); oy++) {
+                            double fy = Math.max(Math.abs(oy * cellSizeY - py), Math.abs((oy + 1) * cellSizeY - py));
+                            if (fx * fx + fy * fy < diameter2 || (ox == cx && oy == cy)) {
+                                close((ox - fromX) * height + (oy - fromY), candidates, positionOf, open);
+                            }
+                        }
+                    }
+                } else if (++failures[local] == CELL_ATTEMPTS) {
+                    close(local, candidates, positionOf, open);
+                }
+            }
+        }
+
+        private boolean isFree(double px, double py, int cx, int cy) {
+            for (int ox = cx - 2; ox <= cx + 2; ox++) {
+                for (int oy = cy - 2; oy <= cy + 2; oy++) {
+                    int otherX = ox;
+                    int otherY = oy;
+                    if (periodic) {
+                        otherX = Math.floorMod(otherX, Mx);
+                        otherY = Math.floorMod(otherY, My);
+                    } else if (otherX < 0 || otherX >= Mx || otherY < 0 || otherY >= My) {
+                        continue;
+                    }
+                    int j = occupant[otherX * My + otherY];
+                    if (j == -1) {
+                        continue;
+                    }
+                    double dx = Math.abs(px - x[j]);
+                    double dy = Math.abs(py - y[j]);
+                    if (periodic) {
+                        dx = Math.min(dx, Lx - dx);
+                        dy = Math.min(dy, Ly - dy);
+                    }
+                    if (dx * dx + dy * dy < diameter2) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static void close(int c, int[] candidates, int[] positionOf, int[] open) {
+            int k = positionOf[c];
+            if (k >= open[0]) {
+                return;
+            }
+            int last = candidates[--open[0]];
+            candidates[k] = last;
+            positionOf[last] = k;
+            candidates[open[0]] = c;
+            positionOf[c] = open[0];
+        }
+    }
+}
@@ -0,0 +1,263 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Software renderer writing particles straight into the pixels of a {@link BufferedImage}, so it can
+ * run on any thread. Particles are drawn grouped by color class, higher classes on top; the ones
+ * outside the viewport are culled, and the image is split into horizontal bands drawn in parallel.
+ * Particles whose radius is under {@link #AGGREGATE_RADIUS_PIXELS}
+ * are not drawn as disks but accumulated as per-pixel coverage, which keeps zoomed-out views of
+ * millions of particles cheap and still shows the density.
+ */
+class ParticleRenderer {
+    static final int BACKGROUND = 0xFFFFFF;
+    static final int[] DEFAULT_PALETTE = {0x0000FF, 0x00C000, 0xFF0000};
+    private static final double AGGREGATE_RADIUS_PIXELS = 1.0;
+
+    final double Lx;
+    final double Ly;
+    private int[] palette = DEFAULT_PALETTE;
+    // World coordinates of the top-left pixel, and pixels per unit length
+    private double viewX;
+    private double viewY;
+    private double scale = 1;
+    // Scratch space for the aggregated particles
+    private float[] coverage = new float[0];
+    private byte[] coverageClass = new byte[0];
+    private int[] order = new int[0];
+    private int[] bandItems = new int[0];
+
+    ParticleRenderer(double Lx, double Ly) {
+        this.Lx = Lx;
+        this.Ly = Ly;
+    }
+
+    synchronized void setPalette(int[] palette) {
+        this.palette = palette.clone();
+    }
+
+    /**
+     * Shows the whole box in a {@code width} x {@code height} image.
+     */
+    synchronized void fit(int width, int height) {
+        scale = Math.min(width / Lx, height / Ly);
+        viewX = 0;
+        viewY = 0;
+    }
+
+    /**
+     * Zooms by {@code factor} keeping the world point under pixel {@code (pixelX, pixelY)} in place.
+     */
+    synchronized void zoom(double factor, int pixelX, int pixelY) {
+        double worldX = viewX + pixelX / scale;
+        double worldY = viewY + pixelY / scale;
+        scale *= factor;
+        viewX = worldX - pixelX / scale;
+        viewY = worldY - pixelY / scale;
+    }
+
+    synchronized void pan(int dxPixels, int dyPixels) {
+        viewX -= dxPixels / scale;
+        viewY -= dyPixels / scale;
+    }
+
+    /**
+     * Draws the first {@code store.n} particles into {@code target}, or into a new image if it is
+     * {@code null} or of another size.
+     *
+     * @param colors color class of each particle, an index into the palette; {@code null} draws all in class 0
+     */
+    BufferedImage render(ParticleStore store, byte[] colors, BufferedImage target, int width, int height) {
+        if (target == null || target.getWidth() != width || target.getHeight() != height) {
+            target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        double viewX;
+        double viewY;
+        double scale;
+        int[] palette;
+        synchronized (this) {
+            viewX = this.viewX;
+            viewY = this.viewY;
+            scale = this.scale;
+            palette = this.palette;
+        }
+        int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, BACKGROUND);
+        if (coverage.length < pixels.length) {
+            coverage = new float[pixels.length];
+            coverageClass = new byte[pixels.length];
+        } else {
+            Arrays.fill(coverage, 0, pixels.length, 0);
+            Arrays.fill(coverageClass, 0, pixels.length, (byte) 0);
+        }
+
+        // Bucket the visible particles by horizontal band, keeping the color order within each band;
+        // bands own disjoint rows, so they are then drawn in parallel without sharing pixels. A single
+        // band skips the bucketing and culls while drawing
+        int n = store.n;
+        int[] order = sortByColor(colors, n, palette.length);
+        int bands = Math.max(1, Math.min(height, ForkJoinPool.getCommonPoolParallelism() * 2));
+        boolean bucketed = bands > 1;
+        int[] bandStart = new int[bands + 1];
+        int[] bandOfRow = new int[height];
+        for (int band = 0; band < bands; band++) {
+            Arrays.fill(bandOfRow, band * height / bands, (band + 1) * height / bands, band);
+        }
+        for (int pass = 0; pass < (bucketed ? 2 : 0); pass++) {
+            int[] cursor = pass == 0 ? bandStart : bandStart.clone();
+            for (int k = 0; k < n; k++) {
+                int i = order == null ? k : order[k];
+                double px = (store.x[i] - viewX) * scale;
+                double py = (store.y[i] - viewY) * scale;
+                double pr = store.radius[i] * scale;
+                // Cull particles outside the viewport
+                if (px + pr < 0 || py + pr < 0 || px - pr >= width || py - pr >= height) {
+                    continue;
+                }
+                int fromBand;
+                int toBand;
+                if (pr < AGGREGATE_RADIUS_PIXELS) {
+                    if (px < 0 || py < 0 || px >= width || py >= height) {
+                        continue;
+                    }
+                    fromBand = toBand = bandOfRow[(int) py];
+                } else {
+                    fromBand = bandOfRow[(int) Math.max(0, py - pr)];
+                    toBand = bandOfRow[(int) Math.min(height - 1, py + pr)];
+                }
+                for (int band = fromBand; band <= toBand; band++) {
+                    if (pass == 0) {
+                        bandStart[band + 1]++;
+                    } else {
+                        bandItems[cursor[band]++] = i;
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int band = 0; band < bands; band++) {
+                    bandStart[band + 1] += bandStart[band];
+                }
+                if (bandItems.length < bandStart[bands]) {
+                    bandItems = new int[bandStart[bands]];
+                }
+            }
+        }
+
+        double x0 = viewX;
+        double y0 = viewY;
+        double zoom = scale;
+        int[] bandItems = this.bandItems;
+        float[] coverage = this.coverage;
+        byte[] coverageClass = this.coverageClass;
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int fromRow = band * height / bands;
+            int toRow = (band + 1) * height / bands;
+            boolean aggregated = false;
+            int from = bucketed ? bandStart[band] : 0;
+            int to = bucketed ? bandStart[band + 1] : n;
+            for (int k = from; k < to; k++) {
+                int i = bucketed ? bandItems[k] : order == null ? k : order[k];
+                int color = colors == null ? 0 : colors[i];
+                double px = (store.x[i] - x0) * zoom;
+                double py = (store.y[i] - y0) * zoom;
+                double pr = store.radius[i] * zoom;
+                if (!bucketed && (px + pr < 0 || py + pr < 0 || px - pr >= width || py - pr >= height)) {
+                    continue;
+                }
+                if (pr < AGGREGATE_RADIUS_PIXELS) {
+                    if (!bucketed && (px < 0 || py < 0 || px >= width || py >= height)) {
+                        continue;
+                    }
+                    int pixel = (int) py * width + (int) px;
+                    // A disk covers pi * pr^2 pixels; points still leave a trace
+                    coverage[pixel] += (float) Math.max(Math.PI * pr * pr, 0.25);
+                    coverageClass[pixel] = (byte) Math.max(coverageClass[pixel], color);
+                    aggregated = true;
+                } else {
+                    fillDisk(pixels, width, fromRow, toRow, px, py, pr, palette[color]);
+                }
+            }
+            if (aggregated) {
+                for (int p = fromRow * width; p < toRow * width; p++) {
+                    if (coverage[p] > 0) {
+                        pixels[p] = blend(pixels[p], palette[coverageClass[p]], Math.min(1f, coverage[p]));
+                    }
+                }
+            }
+        });
+        return target;
+    }
+
+    /**
+     * Counting sort of the particle indices by color class, so each class is drawn in one batch.
+     */
+    private int[] sortByColor(byte[] colors, int n, int classes) {
+        if (colors == null) {
+            return null;
+        }
+        int[] start = new int[classes + 1];
+        for (int i = 0; i < n; i++) {
+            start[colors[i] + 1]++;
+        }
+        for (int c = 0; c < classes; c++) {
+            start[c + 1] += start[c];
+        }
+        if (order.length < n) {
+            order = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            order[start[colors[i]]++] = i;
+        }
+        return order;
+    }
+
+    private static void fillDisk(int[] pixels, int width, int fromRow, int toRow,
+                                 double px, double py, double pr, int rgb) {
+        int fromY = Math.max(fromRow, (int) Math.floor(py - pr));
+        int toY = Math.min(toRow - 1, (int) Math.ceil(py + pr));
+        for (int row = fromY; row <= toY; row++) {
+            double dy = row + 0.5 - py;
+            double half2 = pr * pr - dy * dy;
+            if (half2 < 0) {
+                continue;
+            }
+            double half = Math.sqrt(half2);
+            int fromX = Math.max(0, (int) Math.round(px - half));
+            int toX = Math.min(width, (int) Math.round(px + half));
+            if (fromX < toX) {
+                Arrays.fill(pixels, row * width + fromX, row * width + toX, rgb);
+            }
+        }
+    }
+
+    private static int blend(int background, int rgb, float alpha) {
+        int r = (int) (((background >> 16) & 0xFF) * (1 - alpha) + ((rgb >> 16) & 0xFF) * alpha);
+        int g = (int) (((background >> 8) & 0xFF) * (1 - alpha) + ((rgb >> 8) & 0xFF) * alpha);
+        int b = (int) ((background & 0xFF) * (1 - alpha) + (rgb & 0xFF) * alpha);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Headless animation: writes {@code frames} PNG images {@code frame_00000.png, ...} to
+     * {@code directory}, advancing the simulation {@code stepsPerFrame} steps between frames.
+     */
+    static void writeFrames(DynamicsSimulation simulation, int frames, int stepsPerFrame, double dt,
+                            Path directory, int width, int height) throws IOException {
+        Files.createDirectories(directory);
+        ParticleRenderer renderer = new ParticleRenderer(simulation.L, simulation.L);
+        renderer.fit(width, height);
+        BufferedImage image = null;
+        for (int frame = 0; frame < frames; frame++) {
+            image = renderer.render(simulation.getStore(), null, image, width, height);
+            ImageIO.write(image, "png", directory.resolve(String.format("frame_%05d.png", frame)).toFile());
+            simulation.run(stepsPerFrame, dt);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.List;
+
+/**
+ * Structure-of-arrays copy of a particle list. Positions and radii live in primitive arrays so the
+ * neighbor search never has to dereference {@link Particle} objects in its inner loop.
+ */
+class ParticleStore {
+    final int n;
+    final double[] x;
+    final double[] y;
+    final double[] z; // Only allocated for 3D stores
+    final double[] radius;
+    final int[] ids;
+
+    ParticleStore(int n) {
+        this(n, false);
+    }
+
+    ParticleStore(int n, boolean withZ) {
+        this.n = n;
+        this.x = new double[n];
+        this.y = new double[n];
+        this.z = withZ ? new double[n] : null;
+        this.radius = new double[n];
+        this.ids = new int[n];
+    }
+
+    /**
+     * Wraps existing arrays, which may be longer than {@code n}.
+     */
+    ParticleStore(int n, double[] x, double[] y, double[] z, double[] radius, int[] ids) {
+        this.n = n;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.radius = radius;
+        this.ids = ids;
+    }
+
+    static ParticleStore of(List<Particle> particles) {
+        ParticleStore store = new ParticleStore(particles.size());
+        for (int i = 0; i < store.n; i++) {
+            Particle p = particles.get(i);
+            store.x[i] = p.x;
+            store.y[i] = p.y;
+            store.radius[i] = p.radius;
+            store.ids[i] = p.id;
+        }
+        return store;
+    }
+
+    static ParticleStore of3D(List<Particle> particles) {
+        ParticleStore store = new ParticleStore(particles.size(), true);
+        for (int i = 0; i < store.n; i++) {
+            Particle p = particles.get(i);
+            store.x[i] = p.x;
+            store.y[i] = p.y;
+            store.z[i] = p.z;
+            store.radius[i] = p.radius;
+            store.ids[i] = p.id;
+        }
+        return store;
+    }
+
+    double maxRadius() {
+        double max = 0;
+        for (int i = 0; i < n; i++) {
+            max = Math.max(max, radius[i]);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,192 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Interactive view of a {@link ParticleStore}: wheel to zoom around the cursor, drag to pan. Frames
+ * are produced by a {@link ParticleRenderer} on a dedicated render thread into two alternating
+ * images; the EDT only copies the latest finished one to the screen. Requests arriving while a frame
+ * is in flight are coalesced, so a slow frame drops frames instead of queueing them.
+ */
+public class ParticleViewer extends JPanel {
+    private final ParticleRenderer renderer;
+    private ParticleStore store;
+    private volatile byte[] colors;
+    private final ExecutorService renderThread = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "particle-renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean renderPending = new AtomicBoolean();
+    private volatile BufferedImage front;
+    private BufferedImage back;
+    // Advances the model before each animation frame; runs on the render thread
+    private volatile Runnable step;
+    private Timer animation;
+    private volatile long frames;
+    private volatile long frameNanos;
+
+    ParticleViewer(ParticleStore store, double Lx, double Ly, int width, int height) {
+        this(store, null, Lx, Ly, width, height);
+    }
+
+    /**
+     * @param colors initial color classes, as for {@link #setColors}; {@code null} draws all in class 0
+     */
+    ParticleViewer(ParticleStore store, byte[] colors, double Lx, double Ly, int width, int height) {
+        this.store = store;
+        this.colors = colors;
+        this.renderer = new ParticleRenderer(Lx, Ly);
+        renderer.fit(width, height);
+        setPreferredSize(new Dimension(width, height));
+
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point last;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                last = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                renderer.pan(e.getX() - last.x, e.getY() - last.y);
+                last = e.getPoint();
+                requestRender();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                renderer.zoom(Math.pow(1.1, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+                requestRender();
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                requestRender();
+            }
+        });
+    }
+
+    ParticleRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Color class of each particle, an index into the renderer's palette.
+     */
+    void setColors(byte[] colors) {
+        this.colors = colors;
+        requestRender();
+    }
+
+    void setStore(ParticleStore store) {
+        renderThread.execute(() -> this.store = store);
+        requestRender();
+    }
+
+    /**
+     * Renders a new frame off the EDT unless one is already pending.
+     */
+    void requestRender() {
+        if (!renderPending.compareAndSet(false, true)) {
+            return;
+        }
+        renderThread.execute(() -> {
+            renderPending.set(false);
+            long startTime = System.nanoTime();
+            Runnable step = this.step;
+            if (step != null) {
+                step.run();
+            }
+            int width = Math.max(1, getWidth());
+            int height = Math.max(1, getHeight());
+            BufferedImage target = back;
+            if (target != null) {
+                synchronized (target) {
+                    target = renderer.render(store, colors, target, width, height);
+                }
+            } else {
+                target = renderer.render(store, colors, null, width, height);
+            }
+            back = front;
+            front = target;
+            frames++;
+            frameNanos += System.nanoTime() - startTime;
+            repaint();
+        });
+    }
+
+    /**
+     * Runs {@code step} and renders a frame at up to {@code fps} frames per second; a {@code null}
+     * step stops the animation.
+     */
+    void animate(Runnable step, int fps) {
+        this.step = step;
+        if (animation != null) {
+            animation.stop();
+            animation = null;
+        }
+        if (step != null) {
+            animation = new Timer(1000 / fps, e -> requestRender());
+            animation.start();
+        }
+    }
+
+    /**
+     * Animates a time-stepped run, advancing {@code stepsPerFrame} steps of size {@code dt} per frame.
+     */
+    void animate(DynamicsSimulation simulation, int stepsPerFrame, double dt, int fps) {
+        setStore(simulation.getStore());
+        animate(() -> {
+            try {
+                simulation.run(stepsPerFrame, dt);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }, fps);
+    }
+
+    /**
+     * Average time spent producing a frame (model step included), in nanoseconds.
+     */
+    double getAverageFrameNanos() {
+        return frames == 0 ? 0 : (double) frameNanos / frames;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        BufferedImage image = front;
+        if (image == null) {
+            requestRender();
+            return;
+        }
+        synchronized (image) {
+            g.drawImage(image, 0, 0, null);
+        }
+    }
+
+    static ParticleViewer show(String title, ParticleViewer viewer) {
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame(title);
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(viewer);
+            frame.pack();
+            frame.setVisible(true);
+        });
+        return viewer;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Measurements of one neighbor search run. Phase timings are always recorded; the counters, the
+ * occupancy histogram and the allocation figure are only filled in when metrics are enabled on the
+ * engine, and are -1 (or {@code null}) otherwise.
+ */
+public class RunMetrics {
+    static final int HISTOGRAM_BUCKETS = 16; // Last bucket collects every occupancy >= 15
+
+    int N;
+    int Mx, My;
+    boolean periodicX, periodicY;
+
+    long createCellsNanos;
+    long assignParticlesNanos;
+    long calculateNeighborsNanos;
+    long totalNanos;
+
+    long distanceEvaluations = -1;
+    long acceptedPairs = -1;
+    long emptyCells = -1;
+    long[] occupancyHistogram;
+    long allocatedBytes = -1;
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getDistanceEvaluations() {
+        return distanceEvaluations;
+    }
+
+    public long getAcceptedPairs() {
+        return acceptedPairs;
+    }
+
+    public long[] getOccupancyHistogram() {
+        return occupancyHistogram;
+    }
+}
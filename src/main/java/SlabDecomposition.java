@@ -0,0 +1,234 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Distributed neighbor search: the cell columns of a {@link CellIndexMethod} grid are split into slabs,
+ * each searched by a separate {@link SlabWorker} JVM. The coordinator sends every worker its slab over a
+ * socket. Workers then swap halo bands of width {@code rc + 2 * maxRadius} with the workers of the
+ * adjacent slabs directly, the last and first slabs included on a periodic x axis, and send back the
+ * pairs they own. The merged lists hold the same neighbors as {@link CellIndexMethod#runSimulation}.
+ * <p>
+ * Workers are started on this machine with the current classpath, which makes the mode testable with
+ * several processes on one host; a worker started by hand elsewhere with the coordinator's address and
+ * a slab index takes part the same way.
+ */
+final class SlabDecomposition {
+    private final CellIndexMethod md;
+    private final int workers;
+    private final List<String> jvmArgs = new ArrayList<>();
+    private boolean launchWorkers = true;
+    private long lastNanos;
+
+    SlabDecomposition(CellIndexMethod md, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        this.md = md;
+        this.workers = workers;
+    }
+
+    /**
+     * Extra JVM options for the worker processes, such as {@code -Xmx}.
+     */
+    SlabDecomposition withJvmArgs(String... args) {
+        Collections.addAll(jvmArgs, args);
+        return this;
+    }
+
+    /**
+     * Leaves the workers to be started externally: {@link #run} then prints the command for each slab.
+     */
+    SlabDecomposition withExternalWorkers() {
+        this.launchWorkers = false;
+        return this;
+    }
+
+    /**
+     * Runs the search across the workers.
+     *
+     * @return neighbor lists indexed by position in the particle list of the engine
+     */
+    NeighborList run(boolean periodicX, boolean periodicY) throws IOException {
+        long startTime = System.nanoTime();
+        List<Particle> particles = md.getParticles();
+        int n = particles.size();
+        double maxRadius = 0;
+        for (Particle p : particles) {
+            maxRadius = Math.max(maxRadius, p.radius);
+        }
+        double halo = md.rc + 2 * maxRadius;
+        int Mx = md.getMx();
+        if (workers > Mx) {
+            throw new IllegalArgumentException("More workers (" + workers + ") than cell columns (" + Mx + ")");
+        }
+        if (Mx > 0 && md.Lx / Mx < halo) {
+            throw new RuntimeException("Invalid M value. The condition L/M >= rc + 2r must be satisfied");
+        }
+        if (periodicX && workers > 1 && md.Lx <= 2 * halo) {
+            throw new IllegalArgumentException("Periodic box side must exceed 2 * (rc + 2 * maxRadius)");
+        }
+        // Slab k owns the cell columns firstColumn[k] .. firstColumn[k + 1] - 1
+        double cellWidth = md.Lx / Mx;
+        int[] firstColumn = new int[workers + 1];
+        int[] slabOfColumn = new int[Mx];
+        for (int k = 0; k <= workers; k++) {
+            firstColumn[k] = (int) ((long) k * Mx / workers);
+        }
+        for (int k = 0; k < workers; k++) {
+            for (int c = firstColumn[k]; c < firstColumn[k + 1]; c++) {
+                slabOfColumn[c] = k;
+            }
+        }
+        int[] slabOf = new int[n];
+        int[] counts = new int[workers];
+        for (int i = 0; i < n; i++) {
+            int column = Math.min(Mx - 1, Math.max(0, (int) (particles.get(i).x / cellWidth)));
+            counts[slabOf[i] = slabOfColumn[column]]++;
+        }
+        SlabWorker.Slab[] slabs = new SlabWorker.Slab[workers];
+        int[] filled = new int[workers];
+        for (int k = 0; k < workers; k++) {
+            slabs[k] = new SlabWorker.Slab(counts[k]);
+        }
+        for (int i = 0; i < n; i++) {
+            SlabWorker.Slab slab = slabs[slabOf[i]];
+            int k = filled[slabOf[i]]++;
+            Particle p = particles.get(i);
+            slab.ids[k] = i;
+            slab.x[k] = p.x;
+            slab.y[k] = p.y;
+            slab.radius[k] = p.radius;
+        }
+
+        List<Process> processes = new ArrayList<>(workers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        InetAddress bindAddress = launchWorkers ? InetAddress.getLoopbackAddress() : null;
+        try (ServerSocket server = new ServerSocket(0, workers, bindAddress)) {
+            server.setSoTimeout(SlabWorker.CONNECT_TIMEOUT_MILLIS);
+            for (int k = 0; k < workers; k++) {
+                List<String> command = workerCommand(server.getLocalPort(), k);
+                if (launchWorkers) {
+                    processes.add(new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                            .redirectError(ProcessBuilder.Redirect.INHERIT).start());
+                } else {
+                    System.out.println(String.join(" ", command));
+                }
+            }
+
+            Socket[] sockets = new Socket[workers];
+            int[] peerPorts = new int[workers];
+            for (int w = 0; w < workers; w++) {
+                Socket socket = server.accept();
+                DataInputStream in = SlabWorker.input(socket);
+                int index = in.readInt();
+                if (index < 0 || index >= workers || sockets[index] != null) {
+                    socket.close();
+                    throw new IOException("Unexpected slab index " + index);
+                }
+                sockets[index] = socket;
+                peerPorts[index] = in.readInt();
+            }
+
+            List<Future<PairBuffer>> results = new ArrayList<>(workers);
+            for (int k = 0; k < workers; k++) {
+                int slab = k;
+                // A link joins each slab to the next one; on a periodic axis the last also links to the first
+                int right = k + 1 < workers ? k + 1 : periodicX && workers > 1 ? 0 : -1;
+                boolean hasLeft = k > 0 || (periodicX && workers > 1);
+                results.add(executor.submit(() -> exchange(sockets[slab], slabs[slab],
+                        cellWidth * firstColumn[slab], cellWidth * firstColumn[slab + 1], halo,
+                        periodicX, periodicY, right < 0 ? "" : sockets[right].getInetAddress().getHostAddress(),
+                        right < 0 ? -1 : peerPorts[right], hasLeft)));
+            }
+            List<PairBuffer> pairs = new ArrayList<>(workers);
+            for (Future<PairBuffer> result : results) {
+                pairs.add(result.get());
+            }
+            for (Process process : processes) {
+                if (process.waitFor() != 0) {
+                    throw new IOException("Slab worker exited with status " + process.exitValue());
+                }
+            }
+            NeighborList neighborList = NeighborList.fromPairs(n, pairs);
+            lastNanos = System.nanoTime() - startTime;
+            return neighborList;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for slab workers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new RuntimeException("Slab exchange failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Sends one worker its configuration and slab, then reads back the pairs it owns.
+     */
+    private PairBuffer exchange(Socket socket, SlabWorker.Slab slab, double x0, double x1, double halo,
+                                boolean periodicX, boolean periodicY, String rightHost, int rightPort,
+                                boolean hasLeft) throws IOException {
+        try (socket) {
+            DataOutputStream out = SlabWorker.output(socket);
+            out.writeInt(workers);
+            out.writeDouble(md.Lx);
+            out.writeDouble(md.Ly);
+            out.writeDouble(md.rc);
+            out.writeDouble(halo);
+            out.writeDouble(x0);
+            out.writeDouble(x1);
+            out.writeBoolean(periodicX);
+            out.writeBoolean(periodicY);
+            out.writeUTF(rightHost);
+            out.writeInt(rightPort);
+            out.writeBoolean(hasLeft);
+            slab.write(out);
+            out.flush();
+
+            DataInputStream in = SlabWorker.input(socket);
+            int count = in.readInt();
+            PairBuffer pairs = new PairBuffer(Math.max(16, count));
+            for (int k = 0; k < count; k++) {
+                pairs.add(in.readInt(), in.readInt());
+            }
+            return pairs;
+        }
+    }
+
+    private List<String> workerCommand(int port, int slab) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SlabWorker.class.getName());
+        command.add(launchWorkers ? InetAddress.getLoopbackAddress().getHostAddress()
+                : InetAddress.getLocalHost().getHostAddress());
+        command.add(Integer.toString(port));
+        command.add(Integer.toString(slab));
+        return command;
+    }
+
+    /**
+     * Wall-clock time of the last {@link #run}, including process start-up and the transfers.
+     */
+    long getLastNanos() {
+        return lastNanos;
+    }
+}
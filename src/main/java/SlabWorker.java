@@ -0,0 +1,245 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Worker process of a {@link SlabDecomposition}: owns one slab of cell columns, swaps halo bands with
+ * the workers of the adjacent slabs and reports the pairs it owns back to the coordinator.
+ * <p>
+ * Usage: {@code java SlabWorker <coordinator host> <coordinator port> <slab index>}
+ */
+public class SlabWorker {
+    static final int BUFFER_BYTES = 1 << 16;
+    static final int CONNECT_TIMEOUT_MILLIS = 60_000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: java SlabWorker <coordinator host> <coordinator port> <slab index>");
+            System.exit(2);
+        }
+        int index = Integer.parseInt(args[2]);
+        try (Socket coordinator = new Socket(args[0], Integer.parseInt(args[1]));
+             ServerSocket peers = new ServerSocket(0, 2, coordinator.getLocalAddress())) {
+            peers.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            DataInputStream in = input(coordinator);
+            DataOutputStream out = output(coordinator);
+            out.writeInt(index);
+            out.writeInt(peers.getLocalPort());
+            out.flush();
+
+            int workers = in.readInt();
+            double Lx = in.readDouble();
+            double Ly = in.readDouble();
+            double rc = in.readDouble();
+            double halo = in.readDouble();
+            double x0 = in.readDouble();
+            double x1 = in.readDouble();
+            boolean periodicX = in.readBoolean();
+            boolean periodicY = in.readBoolean();
+            String rightHost = in.readUTF();
+            int rightPort = in.readInt();
+            boolean hasLeft = in.readBoolean();
+            Slab slab = Slab.read(in);
+
+            PairBuffer pairs;
+            if (workers == 1 && periodicX) {
+                // The only slab spans the whole box, so it is searched periodically instead of against
+                // images of itself, which would repeat pairs when the box is narrower than two halos
+                pairs = slab.ownedPairs(List.of(), 0, Lx, Ly, rc, true, periodicY);
+            } else {
+                List<Slab> halos = List.of();
+                if (workers > 1) {
+                    // Bands the neighbors need, already moved into their frame across the periodic seam
+                    Slab leftBand = slab.band(Double.NEGATIVE_INFINITY, x0 + halo, index == 0 ? Lx : 0);
+                    Slab rightBand = slab.band(x1 - halo, Double.POSITIVE_INFINITY, index == workers - 1 ? -Lx : 0);
+                    halos = exchange(peers, hasLeft, leftBand, rightHost, rightPort, rightBand);
+                }
+                pairs = slab.ownedPairs(halos, x0 - halo, (x1 - x0) + 2 * halo, Ly, rc, false, periodicY);
+            }
+            out.writeInt(pairs.size());
+            for (int k = 0; k < pairs.size(); k++) {
+                out.writeInt(pairs.first(k));
+                out.writeInt(pairs.second(k));
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Sends each band over its link from a thread of its own, so that two workers writing to each other
+     * never block on full socket buffers, and returns the bands received.
+     */
+    private static List<Slab> exchange(ServerSocket peers, boolean hasLeft, Slab leftBand, String rightHost,
+                                       int rightPort, Slab rightBand) throws IOException {
+        // Connect right first: every worker's server is listening before the coordinator hands out ports
+        Socket right = rightPort < 0 ? null : new Socket(rightHost, rightPort);
+        Socket left = hasLeft ? peers.accept() : null;
+        List<Thread> senders = new ArrayList<>(2);
+        List<IOException> failures = new ArrayList<>();
+        if (left != null) senders.add(send(left, leftBand, failures));
+        if (right != null) senders.add(send(right, rightBand, failures));
+        List<Slab> received = new ArrayList<>(2);
+        try {
+            if (left != null) received.add(Slab.read(input(left)));
+            if (right != null) received.add(Slab.read(input(right)));
+            for (Thread sender : senders) {
+                sender.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during halo exchange", e);
+        } finally {
+            if (left != null) left.close();
+            if (right != null) right.close();
+        }
+        synchronized (failures) {
+            if (!failures.isEmpty()) throw failures.get(0);
+        }
+        return received;
+    }
+
+    private static Thread send(Socket socket, Slab band, List<IOException> failures) {
+        Thread thread = new Thread(() -> {
+            try {
+                DataOutputStream out = output(socket);
+                band.write(out);
+                out.flush();
+            } catch (IOException e) {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            }
+        }, "halo-sender");
+        thread.start();
+        return thread;
+    }
+
+    static DataInputStream input(Socket socket) throws IOException {
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES));
+    }
+
+    static DataOutputStream output(Socket socket) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES));
+    }
+
+    /**
+     * Particles of a slab or of a halo band, identified by their index in the coordinator's list.
+     */
+    static final class Slab {
+        final int n;
+        final int[] ids;
+        final double[] x;
+        final double[] y;
+        final double[] radius;
+
+        Slab(int n) {
+            this.n = n;
+            this.ids = new int[n];
+            this.x = new double[n];
+            this.y = new double[n];
+            this.radius = new double[n];
+        }
+
+        static Slab read(DataInputStream in) throws IOException {
+            Slab slab = new Slab(in.readInt());
+            for (int i = 0; i < slab.n; i++) {
+                slab.ids[i] = in.readInt();
+                slab.x[i] = in.readDouble();
+                slab.y[i] = in.readDouble();
+                slab.radius[i] = in.readDouble();
+            }
+            return slab;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(ids[i]);
+                out.writeDouble(x[i]);
+                out.writeDouble(y[i]);
+                out.writeDouble(radius[i]);
+            }
+        }
+
+        /**
+         * Particles with {@code from <= x < to}, moved by {@code shift} along x.
+         */
+        Slab band(double from, double to, double shift) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (x[i] >= from && x[i] < to) count++;
+            }
+            Slab band = new Slab(count);
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (x[i] >= from && x[i] < to) {
+                    band.ids[k] = ids[i];
+                    band.x[k] = x[i] + shift;
+                    band.y[k] = y[i];
+                    band.radius[k] = radius[i];
+                    k++;
+                }
+            }
+            return band;
+        }
+
+        /**
+         * Searches the slab together with its halos as one box starting at {@code originX}, walled along x
+         * unless {@code periodicX} is set for a slab that spans the whole box. Pairs
+         * between two owned particles are kept, and pairs with a halo particle only when the owned one
+         * has the smaller id, which the neighboring worker sees the other way around.
+         */
+        PairBuffer ownedPairs(List<Slab> halos, double originX, double width, double Ly, double rc,
+                              boolean periodicX, boolean periodicY) {
+            int total = n;
+            for (Slab halo : halos) {
+                total += halo.n;
+            }
+            int[] allIds = new int[total];
+            List<Particle> particles = new ArrayList<>(total);
+            int k = 0;
+            for (Slab part : prepend(this, halos)) {
+                for (int i = 0; i < part.n; i++) {
+                    allIds[k++] = part.ids[i];
+                    particles.add(new Particle(part.ids[i], part.x[i] - originX, part.y[i], part.radius[i]));
+                }
+            }
+            PairBuffer owned = new PairBuffer(Math.max(16, n));
+            if (total == 0) return owned;
+            List<PairBuffer> stripes = new CellIndexMethod(particles, width, Ly, rc).withParallelism()
+                    .forEachPair(periodicX, periodicY, count -> new PairBuffer() {
+                        @Override
+                        public void accept(int i, int j, double distance) {
+                            int a = allIds[i];
+                            int b = allIds[j];
+                            boolean ownsI = i < n;
+                            boolean ownsJ = j < n;
+                            // A particle and its own periodic image are not a pair
+                            if (a == b || (!ownsI && !ownsJ)) return;
+                            if (ownsI != ownsJ && (ownsI ? a > b : b > a)) return;
+                            add(a, b);
+                        }
+                    });
+            for (PairBuffer stripe : stripes) {
+                for (int p = 0; p < stripe.size(); p++) {
+                    owned.add(stripe.first(p), stripe.second(p));
+                }
+            }
+            return owned;
+        }
+
+        private static List<Slab> prepend(Slab first, List<Slab> rest) {
+            List<Slab> all = new ArrayList<>(rest.size() + 1);
+            all.add(first);
+            all.addAll(rest);
+            return all;
+        }
+    }
+}
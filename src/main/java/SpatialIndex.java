@@ -0,0 +1,518 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Persistent cell grid answering ad-hoc spatial queries: particles within a distance of a point, the
+ * k nearest particles, and counts inside a rectangle. All distances are between centres, using the
+ * minimum image along periodic axes.
+ * <p>
+ * The grid is built once with a {@link CellList} counting sort and then kept as one growable bucket
+ * per cell, so {@link #insert}, {@link #remove} and {@link #move} only touch the buckets involved.
+ * Queries share a read lock and run concurrently; updates take the write lock.
+ */
+class SpatialIndex {
+    final double Lx;
+    final double Ly;
+    final int Mx;
+    final int My;
+    final boolean periodicX;
+    final boolean periodicY;
+    private final double cellSizeX;
+    private final double cellSizeY;
+    private final StampedLock lock = new StampedLock();
+
+    // Particle slots; removed slots are recycled through freeSlots
+    private double[] x;
+    private double[] y;
+    private int[] ids;
+    private int[] cellOf;
+    private int[] positionInCell;
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+    private int slots;
+    private final Map<Integer, Integer> slotOf = new HashMap<>();
+
+    // Ids of the particles of each cell in cellIds[c][0 .. cellSize[c]), and their interleaved
+    // coordinates in cellCoords[c], so scanning a cell reads contiguous memory
+    private final int[][] cellIds;
+    private final double[][] cellCoords;
+    private final int[] cellSize;
+
+    SpatialIndex(List<Particle> particles, double Lx, double Ly, int Mx, int My,
+                 boolean periodicX, boolean periodicY) {
+        if (Mx < 1 || My < 1) {
+            throw new IllegalArgumentException("The grid needs at least one cell per axis");
+        }
+        this.Lx = Lx;
+        this.Ly = Ly;
+        this.Mx = Mx;
+        this.My = My;
+        this.periodicX = periodicX;
+        this.periodicY = periodicY;
+        this.cellSizeX = Lx / Mx;
+        this.cellSizeY = Ly / My;
+
+        ParticleStore store = ParticleStore.of(particles);
+        int n = store.n;
+        this.x = Arrays.copyOf(store.x, Math.max(n, 16));
+        this.y = Arrays.copyOf(store.y, Math.max(n, 16));
+        this.ids = Arrays.copyOf(store.ids, Math.max(n, 16));
+        this.cellOf = new int[x.length];
+        this.positionInCell = new int[x.length];
+        this.slots = n;
+
+        CellList cells = new CellList(Lx, Ly, Mx, My);
+        cells.build(store.x, store.y, n);
+        this.cellIds = new int[Mx * My][];
+        this.cellCoords = new double[Mx * My][];
+        this.cellSize = new int[Mx * My];
+        for (int c = 0; c < Mx * My; c++) {
+            int size = cells.cellStart[c + 1] - cells.cellStart[c];
+            cellIds[c] = new int[Math.max(size, 2)];
+            cellCoords[c] = new double[2 * cellIds[c].length];
+            cellSize[c] = size;
+            for (int k = 0; k < size; k++) {
+                int slot = cells.order[cells.cellStart[c] + k];
+                cellIds[c][k] = ids[slot];
+                cellCoords[c][2 * k] = x[slot];
+                cellCoords[c][2 * k + 1] = y[slot];
+                cellOf[slot] = c;
+                positionInCell[slot] = k;
+            }
+        }
+        for (int slot = 0; slot < n; slot++) {
+            if (slotOf.put(ids[slot], slot) != null) {
+                throw new IllegalArgumentException("Duplicate particle id " + ids[slot]);
+            }
+        }
+    }
+
+    /**
+     * Index over the particles and grid of a {@link CellIndexMethod}, with its last boundary conditions.
+     */
+    static SpatialIndex of(CellIndexMethod md) {
+        return new SpatialIndex(md.getParticles(), md.Lx, md.Ly, md.getMx(), md.getMy(),
+                md.isPeriodicX(), md.isPeriodicY());
+    }
+
+    /**
+     * Index with about two particles per cell, the sweet spot for point queries.
+     */
+    static SpatialIndex of(List<Particle> particles, double Lx, double Ly, boolean periodic) {
+        double cellSide = Math.sqrt(2 * Lx * Ly / Math.max(1, particles.size()));
+        int Mx = (int) Math.max(1, Math.min(4096, Lx / cellSide));
+        int My = (int) Math.max(1, Math.min(4096, Ly / cellSide));
+        return new SpatialIndex(particles, Lx, Ly, Mx, My, periodic, periodic);
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return slotOf.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Calls {@code action} with the id of every particle whose centre is within {@code r} of
+     * {@code (px, py)}. The read lock is held meanwhile, so {@code action} must not use the index.
+     */
+    void forEachWithin(double px, double py, double r, IntConsumer action) {
+        long stamp = lock.readLock();
+        try {
+            double r2 = r * r;
+            int cx = cellX(px);
+            int cy = cellY(py);
+            // Only the cells the query circle overlaps
+            int fromX = (int) Math.floor((px - r) / cellSizeX) - cx;
+            int toX = (int) Math.floor((px + r) / cellSizeX) - cx;
+            int fromY = (int) Math.floor((py - r) / cellSizeY) - cy;
+            int toY = (int) Math.floor((py + r) / cellSizeY) - cy;
+            // A periodic window narrower than the grid wraps onto distinct cells; a wider one is every cell once
+            if (periodicX && toX - fromX + 1 >= Mx) {
+                fromX = -cx;
+                toX = Mx - 1 - cx;
+            }
+            if (periodicY && toY - fromY + 1 >= My) {
+                fromY = -cy;
+                toY = My - 1 - cy;
+            }
+            for (int dx = fromX; dx <= toX; dx++) {
+                int otherX = wrap(cx + dx, Mx, periodicX);
+                if (otherX == -1) {
+                    continue;
+                }
+                for (int dy = fromY; dy <= toY; dy++) {
+                    int otherY = wrap(cy + dy, My, periodicY);
+                    if (otherY == -1) {
+                        continue;
+                    }
+                    int c = otherX * My + otherY;
+                    double[] coords = cellCoords[c];
+                    for (int k = 0; k < cellSize[c]; k++) {
+                        if (distance2(px, py, coords[2 * k], coords[2 * k + 1]) <= r2) {
+                            action.accept(cellIds[c][k]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Ids of the particles whose centre is within {@code r} of {@code (px, py)}, in no particular order.
+     */
+    int[] within(double px, double py, double r) {
+        int[][] found = {new int[16]};
+        int[] count = {0};
+        forEachWithin(px, py, r, id -> {
+            if (count[0] == found[0].length) {
+                found[0] = Arrays.copyOf(found[0], count[0] * 2);
+            }
+            found[0][count[0]++] = id;
+        });
+        return Arrays.copyOf(found[0], count[0]);
+    }
+
+    /**
+     * Ids of the {@code k} particles nearest to {@code (px, py)}, closest first; fewer if the index
+     * holds fewer particles.
+     */
+    int[] nearest(double px, double py, int k) {
+        long stamp = lock.readLock();
+        try {
+            return nearestLocked(px, py, k, Integer.MIN_VALUE);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Ids of the {@code k} particles nearest to particle {@code id}, closest first, excluding itself.
+     *
+     * @throws IllegalArgumentException if there is no particle with that id
+     */
+    int[] nearest(int id, int k) {
+        long stamp = lock.readLock();
+        try {
+            int slot = requireSlot(id);
+            return nearestLocked(x[slot], y[slot], k, id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Searches rings of cells at growing Chebyshev distance from the query cell, keeping the best
+     * {@code k} in a max-heap, until everything outside the rings searched so far is farther than the
+     * current worst.
+     */
+    private int[] nearestLocked(double px, double py, int k, int excludedId) {
+        if (k <= 0) {
+            return new int[0];
+        }
+        double[] heapDistance = new double[k];
+        int[] heapId = new int[k];
+        int found = 0;
+        int cx = cellX(px);
+        int cy = cellY(py);
+        int maxRing = Math.max(periodicX ? Mx / 2 : Math.max(cx, Mx - 1 - cx),
+                periodicY ? My / 2 : Math.max(cy, My - 1 - cy));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Distance from the query point to the outside of the rings searched so far
+            double bound = Math.min(
+                    Math.min(px - (cx - ring + 1) * cellSizeX, (cx + ring) * cellSizeX - px),
+                    Math.min(py - (cy - ring + 1) * cellSizeY, (cy + ring) * cellSizeY - py));
+            if (ring > 0 && found == k && bound * bound > heapDistance[0]) {
+                break;
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                boolean edgeX = dx == -ring || dx == ring;
+                int otherX = wrapOffset(cx, dx, Mx, periodicX);
+                if (otherX == -1) {
+                    continue;
+                }
+                for (int dy = -ring; dy <= ring; dy += edgeX ? 1 : 2 * ring) {
+                    int otherY = wrapOffset(cy, dy, My, periodicY);
+                    if (otherY != -1) {
+                        int c = otherX * My + otherY;
+                        double[] coords = cellCoords[c];
+                        for (int m = 0; m < cellSize[c]; m++) {
+                            int id = cellIds[c][m];
+                            if (id == excludedId) {
+                                continue;
+                            }
+                            double d2 = distance2(px, py, coords[2 * m], coords[2 * m + 1]);
+                            if (found < k) {
+                                siftUp(heapDistance, heapId, found++, d2, id);
+                            } else if (d2 < heapDistance[0]) {
+                                siftDown(heapDistance, heapId, k, d2, id);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // Pop the heap from the back to get the closest first
+        int[] result = new int[found];
+        for (int size = found; size > 0; size--) {
+            result[size - 1] = heapId[0];
+            double lastDistance = heapDistance[size - 1];
+            int lastId = heapId[size - 1];
+            if (size > 1) {
+                siftDown(heapDistance, heapId, size - 1, lastDistance, lastId);
+            }
+        }
+        return result;
+    }
+
+    private static void siftUp(double[] distance, int[] id, int position, double d2, int value) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (distance[parent] >= d2) {
+                break;
+            }
+            distance[position] = distance[parent];
+            id[position] = id[parent];
+            position = parent;
+        }
+        distance[position] = d2;
+        id[position] = value;
+    }
+
+    /**
+     * Replaces the root of a max-heap of {@code size} entries and restores the heap order.
+     */
+    private static void siftDown(double[] distance, int[] id, int size, double d2, int value) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && distance[child + 1] > distance[child]) {
+                child++;
+            }
+            if (distance[child] <= d2) {
+                break;
+            }
+            distance[position] = distance[child];
+            id[position] = id[child];
+            position = child;
+        }
+        distance[position] = d2;
+        id[position] = value;
+    }
+
+    /**
+     * Number of particles with centre in {@code [fromX, toX) x [fromY, toY)}. Cells entirely inside
+     * the rectangle are counted from their bucket sizes without looking at the particles.
+     */
+    int count(double fromX, double fromY, double toX, double toY) {
+        long stamp = lock.readLock();
+        try {
+            int count = 0;
+            int firstX = cellX(Math.max(0, fromX));
+            int lastX = cellX(Math.min(Math.nextDown(Lx), toX));
+            int firstY = cellY(Math.max(0, fromY));
+            int lastY = cellY(Math.min(Math.nextDown(Ly), toY));
+            for (int cx = firstX; cx <= lastX; cx++) {
+                boolean insideX = cx * cellSizeX >= fromX && (cx + 1) * cellSizeX <= toX;
+                for (int cy = firstY; cy <= lastY; cy++) {
+                    int c = cx * My + cy;
+                    if (insideX && cy * cellSizeY >= fromY && (cy + 1) * cellSizeY <= toY) {
+                        count += cellSize[c];
+                        continue;
+                    }
+                    double[] coords = cellCoords[c];
+                    for (int m = 0; m < cellSize[c]; m++) {
+                        double px = coords[2 * m];
+                        double py = coords[2 * m + 1];
+                        if (px >= fromX && px < toX && py >= fromY && py < toY) {
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds a particle; positions along periodic axes are wrapped into the box.
+     *
+     * @throws IllegalArgumentException if the id is already present or the position is outside a wall
+     */
+    void insert(int id, double px, double py) {
+        long stamp = lock.writeLock();
+        try {
+            if (slotOf.containsKey(id)) {
+                throw new IllegalArgumentException("Duplicate particle id " + id);
+            }
+            int slot;
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                if (slots == x.length) {
+                    int capacity = x.length * 2;
+                    x = Arrays.copyOf(x, capacity);
+                    y = Arrays.copyOf(y, capacity);
+                    ids = Arrays.copyOf(ids, capacity);
+                    cellOf = Arrays.copyOf(cellOf, capacity);
+                    positionInCell = Arrays.copyOf(positionInCell, capacity);
+                }
+                slot = slots++;
+            }
+            x[slot] = inBox(px, Lx, periodicX);
+            y[slot] = inBox(py, Ly, periodicY);
+            ids[slot] = id;
+            slotOf.put(id, slot);
+            link(slot, cellX(x[slot]) * My + cellY(y[slot]));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void insert(Particle particle) {
+        insert(particle.id, particle.x, particle.y);
+    }
+
+    /**
+     * @return whether the particle was present
+     */
+    boolean remove(int id) {
+        long stamp = lock.writeLock();
+        try {
+            Integer slot = slotOf.remove(id);
+            if (slot == null) {
+                return false;
+            }
+            unlink(slot);
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+            }
+            freeSlots[freeCount++] = slot;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Moves a particle, rebinning it only if it changed cell.
+     *
+     * @throws IllegalArgumentException if there is no particle with that id or the position is outside a wall
+     */
+    void move(int id, double px, double py) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = requireSlot(id);
+            x[slot] = inBox(px, Lx, periodicX);
+            y[slot] = inBox(py, Ly, periodicY);
+            int c = cellX(x[slot]) * My + cellY(y[slot]);
+            if (c != cellOf[slot]) {
+                unlink(slot);
+                link(slot, c);
+            } else {
+                cellCoords[c][2 * positionInCell[slot]] = x[slot];
+                cellCoords[c][2 * positionInCell[slot] + 1] = y[slot];
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void link(int slot, int c) {
+        if (cellSize[c] == cellIds[c].length) {
+            cellIds[c] = Arrays.copyOf(cellIds[c], cellIds[c].length * 2);
+            cellCoords[c] = Arrays.copyOf(cellCoords[c], cellCoords[c].length * 2);
+        }
+        int k = cellSize[c]++;
+        cellIds[c][k] = ids[slot];
+        cellCoords[c][2 * k] = x[slot];
+        cellCoords[c][2 * k + 1] = y[slot];
+        positionInCell[slot] = k;
+        cellOf[slot] = c;
+    }
+
+    private void unlink(int slot) {
+        // Move the last entry of the cell into the hole
+        int c = cellOf[slot];
+        int last = --cellSize[c];
+        int hole = positionInCell[slot];
+        if (hole != last) {
+            int lastId = cellIds[c][last];
+            cellIds[c][hole] = lastId;
+            cellCoords[c][2 * hole] = cellCoords[c][2 * last];
+            cellCoords[c][2 * hole + 1] = cellCoords[c][2 * last + 1];
+            positionInCell[slotOf.get(lastId)] = hole;
+        }
+    }
+
+    private int requireSlot(int id) {
+        Integer slot = slotOf.get(id);
+        if (slot == null) {
+            throw new IllegalArgumentException("No particle with id " + id);
+        }
+        return slot;
+    }
+
+    private static double inBox(double value, double L, boolean periodic) {
+        if (periodic) {
+            value -= L * Math.floor(value / L);
+            return value < L ? value : 0;
+        }
+        if (value < 0 || value >= L) {
+            throw new IllegalArgumentException("Position " + value + " is outside [0, " + L + ")");
+        }
+        return value;
+    }
+
+    private double distance2(double px, double py, double qx, double qy) {
+        double dx = Math.abs(px - qx);
+        double dy = Math.abs(py - qy);
+        if (periodicX) {
+            dx = Math.min(dx, Lx - dx);
+        }
+        if (periodicY) {
+            dy = Math.min(dy, Ly - dy);
+        }
+        return dx * dx + dy * dy;
+    }
+
+    private int cellX(double px) {
+        return Math.min(Mx - 1, Math.max(0, (int) (px / cellSizeX)));
+    }
+
+    private int cellY(double py) {
+        return Math.min(My - 1, Math.max(0, (int) (py / cellSizeY)));
+    }
+
+    private static int wrap(int cell, int M, boolean periodic) {
+        if (periodic) {
+            return Math.floorMod(cell, M);
+        }
+        return cell < 0 || cell >= M ? -1 : cell;
+    }
+
+    /**
+     * Cell at {@code offset} from {@code cell}, or -1 past a wall or if a periodic axis already wrapped
+     * onto a cell visited at a smaller offset.
+     */
+    private static int wrapOffset(int cell, int offset, int M, boolean periodic) {
+        if (periodic && (offset < -((M - 1) / 2) || offset > M / 2)) {
+            return -1;
+        }
+        return wrap(cell + offset, M, periodic);
+    }
+}
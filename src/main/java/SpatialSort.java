@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/**
+ * Reorders particle storage so that particles close in space are close in memory: grouped by cell,
+ * with the cells taken in linear order or along a Morton (Z-order) curve. The stencil scan then walks
+ * contiguous slices instead of jumping through the whole arrays.
+ * <p>
+ * The permutation maps each new position to the particle's previous index, so results computed on the
+ * sorted storage are translated back and callers keep seeing their original indices and ids.
+ */
+final class SpatialSort {
+    enum Order { CELL, MORTON }
+
+    private final Order order;
+    // Cells in Morton order, cached per grid shape
+    private int[] cellAt;
+    private int cachedMx;
+    private int cachedMy;
+    private int[] permutation = new int[0];
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] radius = new double[0];
+    private int[] ids = new int[0];
+
+    SpatialSort(Order order) {
+        this.order = order;
+    }
+
+    Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Sorted position to original index, for the particles binned in {@code cells}. The returned array
+     * is reused by the next call.
+     */
+    int[] permutation(CellList cells, int n) {
+        if (permutation.length < n) {
+            permutation = new int[n];
+        }
+        if (order == Order.CELL) {
+            System.arraycopy(cells.order, 0, permutation, 0, n);
+            return permutation;
+        }
+        int[] cellAt = mortonCells(cells.Mx, cells.My);
+        int k = 0;
+        for (int c : cellAt) {
+            int size = cells.cellStart[c + 1] - cells.cellStart[c];
+            System.arraycopy(cells.order, cells.cellStart[c], permutation, k, size);
+            k += size;
+        }
+        return permutation;
+    }
+
+    /**
+     * Returns a copy of {@code store} in sorted order and rewrites {@code cells} to index it; the cell
+     * counts do not change, only the positions of their slices. The copy is reused by the next call.
+     */
+    ParticleStore apply(ParticleStore store, CellList cells) {
+        int n = store.n;
+        int[] permutation = permutation(cells, n);
+        if (x.length < n) {
+            x = new double[n];
+            y = new double[n];
+            radius = new double[n];
+            ids = new int[n];
+        }
+        for (int k = 0; k < n; k++) {
+            int i = permutation[k];
+            x[k] = store.x[i];
+            y[k] = store.y[i];
+            radius[k] = store.radius[i];
+            ids[k] = store.ids[i];
+        }
+
+        // Each cell's slice of the new storage starts where the previous cell in sort order ended
+        int start = 0;
+        int cellCount = cells.cellCount();
+        for (int r = 0; r < cellCount; r++) {
+            int c = order == Order.CELL ? r : cellAt[r];
+            for (int a = cells.cellStart[c]; a < cells.cellStart[c + 1]; a++) {
+                cells.order[a] = start;
+                cells.cellOf[start++] = c;
+            }
+        }
+        return new ParticleStore(n, x, y, null, radius, ids);
+    }
+
+    int[] getPermutation() {
+        return permutation;
+    }
+
+    private int[] mortonCells(int Mx, int My) {
+        if (cellAt != null && cachedMx == Mx && cachedMy == My) {
+            return cellAt;
+        }
+        if (Mx > 1 << 15 || My > 1 << 15) {
+            throw new IllegalArgumentException("Morton order supports up to 32768 cells per axis");
+        }
+        // The code fits in the high half and the linear index in the low half of one sortable key
+        long[] keys = new long[Mx * My];
+        for (int cx = 0; cx < Mx; cx++) {
+            for (int cy = 0; cy < My; cy++) {
+                keys[cx * My + cy] = Morton.encode(cx, cy) << 32 | (cx * My + cy);
+            }
+        }
+        Arrays.sort(keys);
+        cellAt = new int[keys.length];
+        for (int r = 0; r < keys.length; r++) {
+            cellAt[r] = (int) keys[r];
+        }
+        cachedMx = Mx;
+        cachedMy = My;
+        return cellAt;
+    }
+
+    /**
+     * Reorders {@code values} in place so that {@code values[k]} becomes the old {@code values[permutation[k]]}.
+     */
+    static void permute(double[] values, int[] permutation, int n) {
+        double[] old = Arrays.copyOf(values, n);
+        for (int k = 0; k < n; k++) {
+            values[k] = old[permutation[k]];
+        }
+    }
+
+    static void permute(int[] values, int[] permutation, int n) {
+        int[] old = Arrays.copyOf(values, n);
+        for (int k = 0; k < n; k++) {
+            values[k] = old[permutation[k]];
+        }
+    }
+}
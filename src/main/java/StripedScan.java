@@ -0,0 +1,74 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+/**
+ * Splits a pair scan over {@code [0, rows)} into stripes on a fork-join pool. Each stripe writes to
+ * its own sink (a {@link PairBuffer}, an accumulator, ...), so no locking is needed, and the sinks
+ * are returned in row order so that concatenating them reproduces the serial output exactly.
+ */
+final class StripedScan {
+    private static final int STRIPES_PER_THREAD = 4;
+
+    @FunctionalInterface
+    interface RowScan<C> {
+        void scan(int fromRow, int toRow, C sink);
+    }
+
+    private StripedScan() {
+    }
+
+    /**
+     * @param pool    pool to run on, or {@code null} for a single serial scan
+     * @param newSink creates the sink of one stripe, given the total number of stripes
+     */
+    static <C> List<C> run(ForkJoinPool pool, int rows, IntFunction<C> newSink, RowScan<C> scan) {
+        if (pool == null || rows < 2) {
+            C sink = newSink.apply(1);
+            scan.scan(0, rows, sink);
+            return List.of(sink);
+        }
+        int stripes = Math.min(rows, pool.getParallelism() * STRIPES_PER_THREAD);
+        Object[] sinks = new Object[stripes];
+        pool.invoke(new StripeTask<>(rows, 0, stripes, sinks, newSink, scan));
+        @SuppressWarnings("unchecked")
+        List<C> result = (List<C>) Arrays.asList(sinks);
+        return result;
+    }
+
+    private static final class StripeTask<C> extends RecursiveAction {
+        private final int rows;
+        private final int from;
+        private final int to;
+        private final Object[] sinks;
+        private final IntFunction<C> newSink;
+        private final RowScan<C> scan;
+
+        StripeTask(int rows, int from, int to, Object[] sinks, IntFunction<C> newSink, RowScan<C> scan) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.sinks = sinks;
+            this.newSink = newSink;
+            this.scan = scan;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int stripes = sinks.length;
+                int fromRow = (int) ((long) rows * from / stripes);
+                int toRow = (int) ((long) rows * to / stripes);
+                C sink = newSink.apply(stripes);
+                scan.scan(fromRow, toRow, sink);
+                sinks[from] = sink;
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StripeTask<>(rows, from, mid, sinks, newSink, scan),
+                    new StripeTask<>(rows, mid, to, sinks, newSink, scan));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the legacy text formats ({@code static_particles.txt}, {@code neighbors.txt}) through a
+ * buffered writer, reading straight from the CSR neighbor lists. The particle file starts with N and a
+ * line holding the box sides {@code Lx Ly}; older files with a single L there are read as square boxes.
+ */
+final class TextExporter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TextExporter() {
+    }
+
+    /**
+     * Particles and box sides read back from a {@link #writeParticles} file.
+     */
+    record ParticleFile(double Lx, double Ly, List<Particle> particles) {
+    }
+
+    static void writeParticles(String fileName, CellIndexMethod md) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(fileName), BUFFER_SIZE)) {
+            writer.write(String.format("%d\n%f\t%f\n", md.N, md.Lx, md.Ly));
+            for (Particle particle : md.getParticles()) {
+                writer.write(String.format("%d\t%f\t%f\t%f\n", particle.id, particle.x, particle.y, particle.radius));
+            }
+        }
+    }
+
+    static ParticleFile readParticles(String fileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName), BUFFER_SIZE)) {
+            int n = Integer.parseInt(reader.readLine().trim());
+            String[] sides = reader.readLine().trim().split("\\s+");
+            double Lx = Double.parseDouble(sides[0]);
+            double Ly = sides.length > 1 ? Double.parseDouble(sides[1]) : Lx;
+            List<Particle> particles = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String[] fields = reader.readLine().trim().split("\\s+");
+                particles.add(new Particle(Integer.parseInt(fields[0]), Double.parseDouble(fields[1]),
+                        Double.parseDouble(fields[2]), Double.parseDouble(fields[3])));
+            }
+            return new ParticleFile(Lx, Ly, particles);
+        }
+    }
+
+    static void writeNeighbors(String fileName, CellIndexMethod md) throws IOException {
+        List<Particle> particles = md.getParticles();
+        NeighborList neighborList = md.getNeighborList();
+        try (Writer writer = new BufferedWriter(new FileWriter(fileName), BUFFER_SIZE)) {
+            for (int i = 0; i < particles.size(); i++) {
+                writer.write(Integer.toString(particles.get(i).id));
+                writer.write('\t');
+                if (neighborList != null) {
+                    for (int k = neighborList.offsets[i]; k < neighborList.offsets[i + 1]; k++) {
+                        writer.write(Integer.toString(particles.get(neighborList.ids[k]).id));
+                        writer.write(' ');
+                    }
+                }
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD distance kernel built on the incubating Vector API ({@code --add-modules jdk.incubator.vector}).
+ * Positions and radii are copied into cell order so that the candidates of a cell, or of several
+ * cells that are consecutive in memory, form one contiguous block. Each particle is compared against
+ * a whole block at a time using squared distances, with the periodic wrap done as a lane-wise
+ * {@code min(d, L - d)}; the scalar loop picks up the tail.
+ */
+final class VectorPairKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private double[] sx = new double[0];
+    private double[] sy = new double[0];
+    private double[] sr = new double[0];
+    private int[] order;
+    private double Lx, Ly, rc;
+    private boolean periodicX, periodicY;
+
+    void prepare(ParticleStore store, CellList cells, double Lx, double Ly, double rc,
+                 boolean periodicX, boolean periodicY) {
+        int n = store.n;
+        if (sx.length != n) {
+            sx = new double[n];
+            sy = new double[n];
+            sr = new double[n];
+        }
+        order = cells.order;
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            sx[k] = store.x[i];
+            sy[k] = store.y[i];
+            sr[k] = store.radius[i];
+        }
+        this.Lx = Lx;
+        this.Ly = Ly;
+        this.rc = rc;
+        this.periodicX = periodicX;
+        this.periodicY = periodicY;
+    }
+
+    /**
+     * Pairs (a, b) with {@code a} in {@code [aFrom, aTo)} and {@code b} in {@code [a + 1, bTo)}: an own
+     * cell, optionally extended by the cells that follow it in memory.
+     */
+    void scanTriangle(int aFrom, int aTo, int bTo, PairConsumer consumer) {
+        for (int a = aFrom; a < aTo; a++) {
+            scanRow(a, a + 1, bTo, consumer);
+        }
+    }
+
+    /**
+     * Pairs (a, b) with {@code a} in {@code [aFrom, aTo)} and {@code b} in {@code [bFrom, bTo)}.
+     */
+    void scanBlock(int aFrom, int aTo, int bFrom, int bTo, PairConsumer consumer) {
+        for (int a = aFrom; a < aTo; a++) {
+            scanRow(a, bFrom, bTo, consumer);
+        }
+    }
+
+    private void scanRow(int a, int bFrom, int bTo, PairConsumer consumer) {
+        double x1 = sx[a];
+        double y1 = sy[a];
+        double reach = rc + sr[a];
+        int b = bFrom;
+        int upper = bFrom + SPECIES.loopBound(Math.max(0, bTo - bFrom));
+        for (; b < upper; b += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, sx, b).sub(x1).abs();
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, sy, b).sub(y1).abs();
+            if (periodicX) dx = dx.min(dx.neg().add(Lx));
+            if (periodicY) dy = dy.min(dy.neg().add(Ly));
+            DoubleVector distance2 = dx.mul(dx).add(dy.mul(dy));
+            DoubleVector cutoff = DoubleVector.fromArray(SPECIES, sr, b).add(reach);
+            VectorMask<Double> hits = distance2.compare(VectorOperators.LE, cutoff.mul(cutoff));
+            if (hits.anyTrue()) {
+                long bits = hits.toLong();
+                while (bits != 0) {
+                    int lane = Long.numberOfTrailingZeros(bits);
+                    consumer.accept(order[a], order[b + lane], Math.sqrt(distance2.lane(lane)));
+                    bits &= bits - 1;
+                }
+            }
+        }
+        // Scalar tail
+        for (; b < bTo; b++) {
+            double dx = Math.abs(sx[b] - x1);
+            double dy = Math.abs(sy[b] - y1);
+            if (periodicX) dx = Math.min(dx, Lx - dx);
+            if (periodicY) dy = Math.min(dy, Ly - dy);
+            double cutoff = reach + sr[b];
+            double distance2 = dx * dx + dy * dy;
+            if (distance2 <= cutoff * cutoff) {
+                consumer.accept(order[a], order[b], Math.sqrt(distance2));
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verlet-skin neighbor list for time-stepped runs. The list is built with cutoff {@code rc + skin}
+ * over a linked cell grid, so it stays valid until some particle has moved more than {@code skin / 2}
+ * since the last build. Between rebuilds only the particles that crossed a cell boundary are rebinned.
+ * <p>
+ * Callers move the particles by writing into {@link #getStore()} (or passing the updated particle
+ * list) and then call {@link #update()} once per step.
+ */
+public class VerletNeighborList {
+    final double L;
+    final double rc;
+    final double skin;
+    final boolean periodic;
+    private final int M;
+    private final double cellSize;
+    private final ParticleStore store;
+
+    // Linked cell list, maintained incrementally
+    private final int[] head;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] cellOf;
+
+    // Positions at the last rebuild
+    private final double[] x0;
+    private final double[] y0;
+
+    private NeighborList neighborList;
+    private int steps;
+    private int rebuilds;
+    private int lastRebinned;
+    private long[] stepNanos = new long[64];
+
+    VerletNeighborList(List<Particle> particles, double L, double rc, double skin, boolean periodic) {
+        this(ParticleStore.of(particles), L, rc, skin, periodic);
+    }
+
+    VerletNeighborList(ParticleStore store, double L, double rc, double skin, boolean periodic) {
+        if (skin <= 0) {
+            throw new IllegalArgumentException("The skin must be positive");
+        }
+        this.store = store;
+        this.L = L;
+        this.rc = rc;
+        this.skin = skin;
+        this.periodic = periodic;
+        this.M = Math.max(1, (int) (L / (rc + skin + 2 * store.maxRadius())));
+        this.cellSize = L / M;
+        this.head = new int[M * M];
+        this.next = new int[store.n];
+        this.prev = new int[store.n];
+        this.cellOf = new int[store.n];
+        this.x0 = new double[store.n];
+        this.y0 = new double[store.n];
+
+        Arrays.fill(head, -1);
+        for (int i = 0; i < store.n; i++) {
+            cellOf[i] = cellFor(i);
+            link(i);
+        }
+        rebuild();
+    }
+
+    /**
+     * Copies the positions of {@code particles} (same order as at construction) and advances one step.
+     */
+    long update(List<Particle> particles) {
+        for (int i = 0; i < store.n; i++) {
+            Particle p = particles.get(i);
+            store.x[i] = p.x;
+            store.y[i] = p.y;
+        }
+        return update();
+    }
+
+    /**
+     * Rebins the particles that changed cell and rebuilds the list if the largest displacement since
+     * the last build exceeds half the skin.
+     *
+     * @return the duration of the step in nanoseconds
+     */
+    long update() {
+        long startTime = System.nanoTime();
+
+        int rebinned = 0;
+        double maxDisplacement2 = 0;
+        for (int i = 0; i < store.n; i++) {
+            int cell = cellFor(i);
+            if (cell != cellOf[i]) {
+                unlink(i);
+                cellOf[i] = cell;
+                link(i);
+                rebinned++;
+            }
+            double dx = Math.abs(store.x[i] - x0[i]);
+            double dy = Math.abs(store.y[i] - y0[i]);
+            if (periodic) {
+                dx = Math.min(dx, L - dx);
+                dy = Math.min(dy, L - dy);
+            }
+            maxDisplacement2 = Math.max(maxDisplacement2, dx * dx + dy * dy);
+        }
+        lastRebinned = rebinned;
+
+        if (maxDisplacement2 > (skin / 2) * (skin / 2)) {
+            rebuild();
+        }
+
+        long duration = System.nanoTime() - startTime;
+        if (steps == stepNanos.length) {
+            stepNanos = Arrays.copyOf(stepNanos, steps * 2);
+        }
+        stepNanos[steps++] = duration;
+        return duration;
+    }
+
+    /**
+     * Order of the current positions along {@code sort}, over this list's grid, as for {@link #reorder}.
+     */
+    int[] spatialPermutation(SpatialSort sort) {
+        CellList cells = new CellList(L, L, M, M);
+        cells.build(store.x, store.y, store.n);
+        return sort.permutation(cells, store.n);
+    }
+
+    /**
+     * Permutes the particle storage so that slot {@code k} takes the particle previously in slot
+     * {@code permutation[k]}, then relinks the cells and rebuilds the list. Ids travel with the
+     * particles in {@link ParticleStore#ids}; {@link #update(List)} assumes the construction order and
+     * must not be used afterwards.
+     */
+    void reorder(int[] permutation) {
+        int n = store.n;
+        SpatialSort.permute(store.x, permutation, n);
+        SpatialSort.permute(store.y, permutation, n);
+        SpatialSort.permute(store.radius, permutation, n);
+        SpatialSort.permute(store.ids, permutation, n);
+        Arrays.fill(head, -1);
+        // Linking pushes to the front, so go backwards to keep each cell in memory order
+        for (int i = n - 1; i >= 0; i--) {
+            cellOf[i] = cellFor(i);
+            link(i);
+        }
+        rebuild();
+    }
+
+    private int cellFor(int i) {
+        int cellX = Math.min(M - 1, Math.max(0, (int) (store.x[i] / cellSize)));
+        int cellY = Math.min(M - 1, Math.max(0, (int) (store.y[i] / cellSize)));
+        return cellX * M + cellY;
+    }
+
+    private void link(int i) {
+        int c = cellOf[i];
+        prev[i] = -1;
+        next[i] = head[c];
+        if (head[c] != -1) {
+            prev[head[c]] = i;
+        }
+        head[c] = i;
+    }
+
+    private void unlink(int i) {
+        if (prev[i] != -1) {
+            next[prev[i]] = next[i];
+        } else {
+            head[cellOf[i]] = next[i];
+        }
+        if (next[i] != -1) {
+            prev[next[i]] = prev[i];
+        }
+    }
+
+    private void rebuild() {
+        PairBuffer pairs = new PairBuffer(store.n);
+        if (periodic && M < 3) {
+            // Every cell is adjacent to every other, the stencil would repeat cells
+            for (int a = 0; a < store.n; a++) {
+                for (int b = a + 1; b < store.n; b++) {
+                    checkPair(a, b, pairs);
+                }
+            }
+        } else {
+            for (int i = 0; i < M; i++) {
+                for (int j = 0; j < M; j++) {
+                    int c = i * M + j;
+                    // Check neighbors in current cell
+                    for (int a = head[c]; a != -1; a = next[a]) {
+                        for (int b = next[a]; b != -1; b = next[b]) {
+                            checkPair(a, b, pairs);
+                        }
+                    }
+
+                    // Check neighbors in adjacent cells (top-right L shape and bottom-right)
+                    checkCells(c, i, j + 1, pairs); // Top
+                    checkCells(c, i + 1, j + 1, pairs); // Top-right
+                    checkCells(c, i + 1, j, pairs); // Right
+                    checkCells(c, i + 1, j - 1, pairs); // Bottom-right
+                }
+            }
+        }
+        neighborList = NeighborList.fromPairs(store.n, pairs);
+        System.arraycopy(store.x, 0, x0, 0, store.n);
+        System.arraycopy(store.y, 0, y0, 0, store.n);
+        rebuilds++;
+    }
+
+    private void checkCells(int c, int otherX, int otherY, PairBuffer pairs) {
+        if (periodic) {
+            otherX = (otherX + M) % M;
+            otherY = (otherY + M) % M;
+        } else if (otherX < 0 || otherX >= M || otherY < 0 || otherY >= M) {
+            return;
+        }
+        int other = otherX * M + otherY;
+        for (int a = head[c]; a != -1; a = next[a]) {
+            for (int b = head[other]; b != -1; b = next[b]) {
+                checkPair(a, b, pairs);
+            }
+        }
+    }
+
+    private void checkPair(int a, int b, PairBuffer pairs) {
+        double dx = Math.abs(store.x[a] - store.x[b]);
+        double dy = Math.abs(store.y[a] - store.y[b]);
+        if (periodic) {
+            dx = Math.min(dx, L - dx);
+            dy = Math.min(dy, L - dy);
+        }
+        double cutoff = rc + skin + store.radius[a] + store.radius[b];
+        if (dx * dx + dy * dy <= cutoff * cutoff) {
+            pairs.add(a, b);
+        }
+    }
+
+    /**
+     * Candidate pairs within {@code rc + skin}; consumers still have to test the actual cutoff.
+     */
+    public NeighborList getNeighborList() {
+        return neighborList;
+    }
+
+    ParticleStore getStore() {
+        return store;
+    }
+
+    int getM() {
+        return M;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Number of full list builds, including the initial one.
+     */
+    public int getRebuildCount() {
+        return rebuilds;
+    }
+
+    public int getLastRebinnedCount() {
+        return lastRebinned;
+    }
+
+    /**
+     * Duration of each {@link #update()} call so far, in nanoseconds.
+     */
+    public long[] getStepNanos() {
+        return Arrays.copyOf(stepNanos, steps);
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.List;
+
+/**
+ * Reusable scratch memory for repeated runs on one thread: the particle arrays, the cell list and the
+ * pair buffer keep their capacity between runs, so a sweep over many configurations does not
+ * reallocate them for every configuration. A workspace must not be shared between threads.
+ */
+final class Workspace {
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] radius = new double[0];
+    private int[] ids = new int[0];
+    private CellList cells;
+    private final PairBuffer pairs = new PairBuffer();
+
+    ParticleStore store(List<Particle> particles) {
+        int n = particles.size();
+        if (x.length < n) {
+            int capacity = Math.max(n, x.length * 2);
+            x = new double[capacity];
+            y = new double[capacity];
+            radius = new double[capacity];
+            ids = new int[capacity];
+        }
+        ParticleStore store = new ParticleStore(n, x, y, null, radius, ids);
+        for (int i = 0; i < n; i++) {
+            Particle p = particles.get(i);
+            x[i] = p.x;
+            y[i] = p.y;
+            radius[i] = p.radius;
+            ids[i] = p.id;
+        }
+        return store;
+    }
+
+    CellList cells(double Lx, double Ly, int Mx, int My) {
+        if (cells == null || cells.Mx != Mx || cells.My != My || cells.Lx != Lx || cells.Ly != Ly) {
+            cells = new CellList(Lx, Ly, Mx, My, cells);
+        }
+        return cells;
+    }
+
+    PairBuffer pairs() {
+        pairs.clear();
+        return pairs;
+    }
+}
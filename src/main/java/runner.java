@@ -1,5 +1,8 @@
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 public class runner {
@@ -12,6 +15,8 @@ public class runner {
 
         compareBruteForceNoRandom(iterations, minN, minL, minRc);
 
+//        batchSweep(10_000, minN, minL, minRc);
+
 //        CellIndexMethod md = new CellIndexMethod(minL, minN, minRc)
 //                .generateRandomParticles(25);
 
@@ -21,6 +26,10 @@ public class runner {
 
 //        createNeighborsFile(md);
 //        createParticlesFile(md);
+//        createBinaryFile(md);
+
+//        runDynamics(md, 1000, 100);
+//        recordDynamics(md, 600);
 
     }
 
@@ -115,28 +124,68 @@ public class runner {
         }
     }
 
-    private static void createNeighborsFile(CellIndexMethod md) {
-        try (FileWriter writer = new FileWriter("neighbors.txt")) {
+    private static void batchSweep(int iterations, int minN, double minL, double minRc) {
+        String fileName = "cell_index_method_batch.csv";
+        List<BatchRunner.Configuration> configurations = new ArrayList<>(iterations);
+        Random rand = new Random();
+        for (int i = 0; i < iterations; i++) {
+            double L = minL + rand.nextDouble() * minL * 2;
+            int N = minN + rand.nextInt(minN * 2);
+            double rc = minRc + rand.nextDouble() * minRc * 9;
+            configurations.add(new BatchRunner.Configuration(i + 1, N, L, rc, 0.25, true, rand.nextLong()));
+        }
+        try {
+            new BatchRunner().run(configurations, fileName);
+            System.out.println("Sweep completed. Results saved to " + fileName);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            for (Integer id : md.getNeighbors().keySet()) {
-                writer.write(String.format("%d\t", id));
-                for (Particle particle : md.getNeighbors().get(id)) {
-                    writer.write(String.format("%d ", particle.id));
-                }
-                writer.write("\n");
-            }
+    private static void createNeighborsFile(CellIndexMethod md) {
+        try {
+            TextExporter.writeNeighbors("neighbors.txt", md);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     private static void createParticlesFile(CellIndexMethod md) {
-        try (FileWriter writer = new FileWriter("static_particles.txt")) {
-            writer.write(String.format("%d\n%f\n",md.N,md.L));
-//            writer.write("id\tposx\tposy\n");
-            for (Particle particle : md.getParticles()) {
-                writer.write(String.format("%d\t%f\t%f\t%f\n", particle.id, particle.x, particle.y, particle.radius));
-            }
+        try {
+            TextExporter.writeParticles("static_particles.txt", md);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void createBinaryFile(CellIndexMethod md) {
+        try {
+            BinaryParticleFile.write(Path.of("particles.bin"), md);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void runDynamics(CellIndexMethod md, int steps, int snapshotEvery) {
+        try {
+            DynamicsSimulation dynamics = new DynamicsSimulation(md.getParticles(), md.L, md.rc, 0.3 * md.rc, true)
+                    .withVicsek(0.03, 0.1)
+                    .withParallelism(true)
+                    .withSnapshots(snapshotEvery, DynamicsSimulation.binarySnapshots("dynamics"));
+            dynamics.run(steps, 1);
+            System.out.println("Steps per second: " + dynamics.getStepsPerSecond()
+                    + ", order parameter: " + dynamics.orderParameter());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void recordDynamics(CellIndexMethod md, int frames) {
+        try {
+            DynamicsSimulation dynamics = new DynamicsSimulation(md.getParticles(), md.L, md.rc, 0.3 * md.rc, true)
+                    .withVicsek(0.03, 0.1)
+                    .withParallelism(true);
+            ParticleRenderer.writeFrames(dynamics, frames, 1, 1, Path.of("frames"), 800, 800);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,34 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BinaryParticleFileTest {
+
+    @Test
+    void mappedViewMatchesReadCopy(@TempDir Path dir) throws IOException {
+        CellIndexMethod md = new CellIndexMethod(20.0, 20.0, 2000, 1.0).withSeed(9).generateRandomParticles(0.1, 0.3);
+        md.runSimulation(true, false);
+        Path file = dir.resolve("snapshot.bin");
+        BinaryParticleFile.write(file, md);
+
+        BinaryParticleFile.Snapshot copy = BinaryParticleFile.read(file);
+        BinaryParticleFile.MappedSnapshot view = BinaryParticleFile.map(file);
+        assertEquals(copy.store.n, view.size());
+        for (int i = 0; i < view.size(); i++) {
+            assertEquals(copy.store.ids[i], view.ids.get(i));
+            assertEquals(copy.store.x[i], view.x.get(i));
+            assertEquals(copy.store.y[i], view.y.get(i));
+            assertEquals(copy.store.radius[i], view.radius.get(i));
+        }
+        for (int i = 0; i <= view.size(); i++) {
+            assertEquals(copy.neighborList.offsets[i], view.offsets.get(i));
+        }
+        for (int k = 0; k < copy.neighborList.ids.length; k++) {
+            assertEquals(copy.neighborList.ids[k], view.neighbors.get(k));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BruteForcePairsTest {
+
+    @Test
+    void smallGridsMatchCellSearch() {
+        // More particles than one tile, so the tiled loop crosses tile boundaries
+        List<Particle> particles = new CellIndexMethod(20.0, 20.0, 3 * BruteForcePairs.TILE + 17, 1.0).withSeed(12)
+                .generateRandomParticles(0.05, 0.3).getParticles();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (boolean periodic : new boolean[]{true, false}) {
+                CellIndexMethod cells = new CellIndexMethod(particles, 20.0, 20.0, 1.0);
+                cells.runSimulation(periodic, periodic);
+                Set<Long> expected = pairs(cells.getNeighborList());
+                for (int M : new int[]{1, 2}) {
+                    for (ForkJoinPool configured : new ForkJoinPool[]{null, pool}) {
+                        CellIndexMethod md = new CellIndexMethod(particles, 20.0, M, particles.size(), 1.0)
+                                .withParallelism(configured);
+                        md.runSimulation(periodic, periodic);
+                        String label = "M " + M + ", periodic " + periodic + ", parallel " + (configured != null);
+                        assertEquals(expected, pairs(md.getNeighborList()), label);
+                        assertEquals(cells.getNeighborList().pairCount(), md.getNeighborList().pairCount(), label);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Set<Long> pairs(NeighborList neighborList) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i + 1 < neighborList.offsets.length; i++) {
+            for (int k = neighborList.offsets[i]; k < neighborList.offsets[i + 1]; k++) {
+                pairs.add((long) i << 32 | neighborList.ids[k]);
+            }
+        }
+        return pairs;
+    }
+}
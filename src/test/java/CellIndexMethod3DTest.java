@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CellIndexMethod3DTest {
+
+    @Test
+    void sameSeedGivesSameParticles() {
+        List<Particle> first = new CellIndexMethod3D(10, 500, 1, true).withSeed(3)
+                .generateRandomParticles(0.2).getParticles();
+        List<Particle> second = new CellIndexMethod3D(10, 500, 1, true).withSeed(3)
+                .generateRandomParticles(0.2).getParticles();
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).x, second.get(i).x);
+            assertEquals(first.get(i).y, second.get(i).y);
+            assertEquals(first.get(i).z, second.get(i).z);
+        }
+    }
+
+    @Test
+    void rerunOnNewGridMatchesBruteForce() {
+        CellIndexMethod3D md = new CellIndexMethod3D(8, 800, 1, true).withSeed(5);
+        for (double radius : new double[]{0, 0.3, 0.1}) {
+            md.generateRandomParticles(radius).runSimulation();
+            assertEquals(bruteForce(md.getParticles(), 8, 1), pairs(md.getNeighborList()), "radius " + radius);
+        }
+    }
+
+    private static Set<Long> pairs(NeighborList neighborList) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i + 1 < neighborList.offsets.length; i++) {
+            for (int k = neighborList.offsets[i]; k < neighborList.offsets[i + 1]; k++) {
+                pairs.add((long) i << 32 | neighborList.ids[k]);
+            }
+        }
+        return pairs;
+    }
+
+    private static Set<Long> bruteForce(List<Particle> particles, double L, double rc) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < particles.size(); i++) {
+            for (int j = i + 1; j < particles.size(); j++) {
+                Particle a = particles.get(i);
+                Particle b = particles.get(j);
+                double dx = Math.abs(a.x - b.x);
+                double dy = Math.abs(a.y - b.y);
+                double dz = Math.abs(a.z - b.z);
+                dx = Math.min(dx, L - dx);
+                dy = Math.min(dy, L - dy);
+                dz = Math.min(dz, L - dz);
+                double cutoff = rc + a.radius + b.radius;
+                if (dx * dx + dy * dy + dz * dz <= cutoff * cutoff) {
+                    pairs.add((long) i << 32 | j);
+                    pairs.add((long) j << 32 | i);
+                }
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClustersTest {
+
+    @Test
+    void labelsMatchComponentsOfNeighborList() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (boolean periodic : new boolean[]{true, false}) {
+                CellIndexMethod md = new CellIndexMethod(40.0, 30.0, 2500, 0.4).withSeed(5)
+                        .generateRandomParticles(0.2, 0.3);
+                md.runSimulation(periodic, periodic);
+                int[] expected = components(md.getNeighborList());
+                int count = Arrays.stream(expected).max().orElse(-1) + 1;
+                int[] sizes = new int[count];
+                for (int label : expected) {
+                    sizes[label]++;
+                }
+
+                for (ForkJoinPool configured : new ForkJoinPool[]{null, pool}) {
+                    Clusters clusters = md.withParallelism(configured).findClusters(periodic, periodic);
+                    String label = "periodic " + periodic + ", parallel " + (configured != null);
+                    assertEquals(count, clusters.count(), label);
+                    assertArrayEquals(expected, clusters.getLabels(), label);
+                    assertArrayEquals(sizes, clusters.getSizes(), label);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void chainAcrossPeriodicBoxPercolates() {
+        List<Particle> particles = new ArrayList<>();
+        // A chain along x that closes through the periodic seam
+        for (int k = 0; k < 10; k++) {
+            particles.add(new Particle(k, 0.5 + k, 5.0, 0.3));
+        }
+        // A pair joined across the seam without wrapping the box
+        particles.add(new Particle(10, 9.6, 2.0, 0.3));
+        particles.add(new Particle(11, 0.2, 2.0, 0.3));
+
+        Clusters periodic = new CellIndexMethod(particles, 10.0, 10.0, 0.5).findClusters(true, true);
+        assertEquals(2, periodic.count());
+        assertEquals(10, periodic.getSizes()[0]);
+        assertEquals(2, periodic.getSizes()[1]);
+        assertTrue(periodic.percolates(0));
+        assertFalse(periodic.percolates(1));
+
+        Clusters walled = new CellIndexMethod(particles, 10.0, 10.0, 0.5).findClusters(false, false);
+        assertEquals(3, walled.count());
+        assertFalse(walled.percolates());
+    }
+
+    /**
+     * Connected components by breadth-first search, numbered in order of their lowest particle index.
+     */
+    private static int[] components(NeighborList neighborList) {
+        int n = neighborList.size();
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        int count = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int start = 0; start < n; start++) {
+            if (labels[start] >= 0) continue;
+            labels[start] = count;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int i = queue.poll();
+                for (int k = 0; k < neighborList.degree(i); k++) {
+                    int j = neighborList.neighbor(i, k);
+                    if (labels[j] < 0) {
+                        labels[j] = count;
+                        queue.add(j);
+                    }
+                }
+            }
+            count++;
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NeighborListTest {
+
+    @Test
+    void csrListsMatchBruteForce() {
+        for (boolean periodic : new boolean[]{true, false}) {
+            CellIndexMethod md = new CellIndexMethod(40.0, 25.0, 3000, 1.0).withSeed(11)
+                    .generateRandomParticles(0.05, 0.3);
+            md.runSimulation(periodic, periodic);
+            NeighborList neighborList = md.getNeighborList();
+
+            Set<Long> expected = bruteForce(md.getParticles(), 40.0, 25.0, 1.0, periodic);
+            assertEquals(expected, pairs(neighborList), "periodic " + periodic);
+            // Both rows of a pair hold it exactly once
+            assertEquals(expected.size(), neighborList.ids.length);
+            assertEquals(expected.size() / 2, neighborList.pairCount());
+        }
+    }
+
+    @Test
+    void streamedPairsMatchNeighborList() {
+        CellIndexMethod md = new CellIndexMethod(30.0, 30.0, 2500, 1.5).withSeed(8).generateRandomParticles(0.1, 0.2);
+        md.runSimulation(true, false);
+        Set<Long> expected = pairs(md.getNeighborList());
+
+        List<Particle> particles = md.getParticles();
+        List<Long> streamed = new ArrayList<>();
+        md.forEachPair(true, false, (i, j, distance) -> {
+            streamed.add(key(i, j));
+            streamed.add(key(j, i));
+            Particle a = particles.get(i);
+            Particle b = particles.get(j);
+            double dx = Math.abs(a.x - b.x);
+            dx = Math.min(dx, 30.0 - dx);
+            assertEquals(Math.hypot(dx, a.y - b.y), distance, 1e-9);
+        });
+        assertEquals(expected, new HashSet<>(streamed));
+        assertEquals(expected.size(), streamed.size(), "each unordered pair reported once");
+    }
+
+    private static Set<Long> pairs(NeighborList neighborList) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i + 1 < neighborList.offsets.length; i++) {
+            for (int k = neighborList.offsets[i]; k < neighborList.offsets[i + 1]; k++) {
+                pairs.add(key(i, neighborList.ids[k]));
+            }
+        }
+        return pairs;
+    }
+
+    private static Set<Long> bruteForce(List<Particle> particles, double Lx, double Ly, double rc, boolean periodic) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < particles.size(); i++) {
+            for (int j = i + 1; j < particles.size(); j++) {
+                Particle a = particles.get(i);
+                Particle b = particles.get(j);
+                double dx = Math.abs(a.x - b.x);
+                double dy = Math.abs(a.y - b.y);
+                if (periodic) {
+                    dx = Math.min(dx, Lx - dx);
+                    dy = Math.min(dy, Ly - dy);
+                }
+                double cutoff = rc + a.radius + b.radius;
+                if (dx * dx + dy * dy <= cutoff * cutoff) {
+                    pairs.add(key(i, j));
+                    pairs.add(key(j, i));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static long key(int i, int j) {
+        return (long) i << 32 | j;
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OutOfCoreNeighborSearchTest {
+
+    @Test
+    void tiledPairsMatchInMemorySearch(@TempDir Path dir) throws IOException {
+        for (boolean periodic : new boolean[]{true, false}) {
+            CellIndexMethod md = new CellIndexMethod(60.0, 40.0, 5000, 1.5).withSeed(4)
+                    .generateRandomParticles(0.1, 0.4);
+            md.runSimulation(periodic, periodic);
+            Path file = dir.resolve("particles-" + periodic + ".bin");
+            BinaryParticleFile.write(file, md);
+
+            Set<Long> expected = new HashSet<>();
+            List<Particle> particles = md.getParticles();
+            NeighborList neighborList = md.getNeighborList();
+            for (int i = 0; i < particles.size(); i++) {
+                for (int k = neighborList.offsets[i]; k < neighborList.offsets[i + 1]; k++) {
+                    expected.add(key(particles.get(i).id, particles.get(neighborList.ids[k]).id));
+                }
+            }
+
+            Path output = dir.resolve("pairs-" + periodic);
+            new OutOfCoreNeighborSearch(file, 1.5, periodic, periodic).withTiles(3, 4).withThreads(2).run(output);
+            Set<Long> found = new HashSet<>();
+            long pairs = OutOfCoreNeighborSearch.readPairs(output, (a, b, distance) -> found.add(key(a, b)));
+            assertEquals(expected, found);
+            assertEquals(expected.size(), pairs, "every pair written once");
+        }
+    }
+
+    @Test
+    void rerunReplacesPairsOfEarlierTileGrid(@TempDir Path dir) throws IOException {
+        CellIndexMethod md = new CellIndexMethod(60.0, 40.0, 3000, 1.5).withSeed(9)
+                .generateRandomParticles(0.1, 0.4);
+        Path file = dir.resolve("particles.bin");
+        BinaryParticleFile.write(file, md);
+        Path output = dir.resolve("pairs");
+
+        new OutOfCoreNeighborSearch(file, 1.5, true, true).withTiles(4, 3).run(output);
+        long finer = OutOfCoreNeighborSearch.readPairs(output, (a, b, distance) -> { });
+        OutOfCoreNeighborSearch.Result result =
+                new OutOfCoreNeighborSearch(file, 1.5, true, true).withTiles(2, 1).run(output);
+        long coarser = OutOfCoreNeighborSearch.readPairs(output, (a, b, distance) -> { });
+        assertEquals(finer, coarser);
+        assertEquals(result.pairs(), coarser, "no pairs left over from the 4 x 3 run");
+    }
+
+    @Test
+    void rejectsCorruptParticleCount(@TempDir Path dir) throws IOException {
+        CellIndexMethod md = new CellIndexMethod(10.0, 10.0, 10, 1.0).withSeed(1).generateRandomParticles(0, 0);
+        Path file = dir.resolve("particles.bin");
+        BinaryParticleFile.write(file, md);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, -5), 8);
+        }
+        assertThrows(IOException.class,
+                () -> new OutOfCoreNeighborSearch(file, 1.0, true, true).run(dir.resolve("pairs")));
+    }
+
+    private static long key(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+}
@@ -0,0 +1,24 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParticleGeneratorTest {
+
+    @Test
+    void zeroMinimumRadiusDrawsFiniteRadii() {
+        List<Particle> particles = new ParticleGenerator(1).uniform(1000, 10, 10, 0, 0.2);
+        for (Particle p : particles) {
+            assertTrue(p.radius >= 0 && p.radius <= 0.2, "radius " + p.radius);
+        }
+    }
+
+    @Test
+    void rejectsInvalidRadiusRange() {
+        ParticleGenerator generator = new ParticleGenerator(1);
+        assertThrows(IllegalArgumentException.class, () -> generator.uniform(5, 10, 10, 0.3, 0.2));
+        assertThrows(IllegalArgumentException.class, () -> generator.uniform(5, 10, 10, -0.1, 0.2));
+    }
+}
@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlabDecompositionTest {
+
+    @Test
+    void workersMatchInMemorySearch() throws IOException {
+        CellIndexMethod md = new CellIndexMethod(48.0, 30.0, 3000, 1.5).withSeed(21).generateRandomParticles(0.1, 0.3);
+        // Workers, periodic x, periodic y; with two periodic slabs each is both neighbors of the other
+        int[][] cases = {{3, 1, 1}, {3, 0, 0}, {3, 1, 0}, {3, 0, 1}, {2, 1, 1}};
+        for (int[] c : cases) {
+            boolean periodicX = c[1] == 1;
+            boolean periodicY = c[2] == 1;
+            md.runSimulation(periodicX, periodicY);
+            NeighborList pairs = new SlabDecomposition(md, c[0]).run(periodicX, periodicY);
+            String label = c[0] + " workers, periodic " + periodicX + "/" + periodicY;
+            assertEquals(pairSet(md.getNeighborList()), pairSet(pairs), label);
+            assertEquals(md.getNeighborList().pairCount(), pairs.pairCount(), label);
+        }
+    }
+
+    @Test
+    void singlePeriodicSlabNarrowerThanTwoHalos() throws IOException {
+        // rc + 2 * maxRadius = 1.9, so the 3.5 wide box holds one cell column and less than two halos
+        CellIndexMethod md = new CellIndexMethod(3.5, 20.0, 80, 1.5).withSeed(3).generateRandomParticles(0.1, 0.2);
+        md.runSimulation(true, true);
+        NeighborList pairs = new SlabDecomposition(md, 1).run(true, true);
+        assertEquals(pairSet(md.getNeighborList()), pairSet(pairs));
+        assertEquals(md.getNeighborList().pairCount(), pairs.pairCount(), "no pair reported twice");
+    }
+
+    static Set<Long> pairSet(NeighborList neighborList) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i + 1 < neighborList.offsets.length; i++) {
+            for (int k = neighborList.offsets[i]; k < neighborList.offsets[i + 1]; k++) {
+                int j = neighborList.ids[k];
+                pairs.add((long) Math.min(i, j) << 32 | Math.max(i, j));
+            }
+        }
+        return pairs;
+    }
+}
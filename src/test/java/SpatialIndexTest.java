@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpatialIndexTest {
+
+    @Test
+    void withinFindsParticleAcrossEvenPeriodicGrid() {
+        List<Particle> particles = List.of(new Particle(0, 14.299, 5.045, 0), new Particle(1, 1.0, 1.0, 0));
+        SpatialIndex index = new SpatialIndex(particles, 26.315, 13.112, 4, 2, true, true);
+        assertArrayEquals(new int[]{0}, index.within(14.465, 6.848, 2.523));
+    }
+
+    @Test
+    void queriesMatchBruteForceOnPeriodicBoxes() {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] cellCounts = {1, 2, 3, 4, 5};
+        for (int Mx : cellCounts) {
+            for (int My : cellCounts) {
+                double Lx = 5 + random.nextDouble() * 25;
+                double Ly = 5 + random.nextDouble() * 25;
+                List<Particle> particles = randomParticles(random, 300, Lx, Ly);
+                SpatialIndex index = new SpatialIndex(particles, Lx, Ly, Mx, My, true, true);
+                checkQueries(random, index, particles, Lx, Ly, true, Mx + "x" + My);
+            }
+        }
+    }
+
+    @Test
+    void defaultIndexMatchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (boolean periodic : new boolean[]{true, false}) {
+            for (int trial = 0; trial < 20; trial++) {
+                double Lx = 5 + random.nextDouble() * 30;
+                double Ly = 5 + random.nextDouble() * 30;
+                List<Particle> particles = randomParticles(random, 1 + random.nextInt(500), Lx, Ly);
+                SpatialIndex index = SpatialIndex.of(particles, Lx, Ly, periodic);
+                checkQueries(random, index, particles, Lx, Ly, periodic, "trial " + trial);
+            }
+        }
+    }
+
+    private static void checkQueries(SplittableRandom random, SpatialIndex index, List<Particle> particles,
+                                     double Lx, double Ly, boolean periodic, String label) {
+        for (int q = 0; q < 200; q++) {
+            double px = random.nextDouble() * Lx;
+            double py = random.nextDouble() * Ly;
+            double r = random.nextDouble() * Math.max(Lx, Ly) * 0.6;
+
+            List<Integer> expected = new ArrayList<>();
+            for (Particle p : particles) {
+                if (distance2(p.x, p.y, px, py, Lx, Ly, periodic) <= r * r) {
+                    expected.add(p.id);
+                }
+            }
+            int[] found = index.within(px, py, r);
+            Arrays.sort(found);
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), found,
+                    label + " within(" + px + ", " + py + ", " + r + ")");
+
+            int k = 1 + random.nextInt(10);
+            double[] expectedDistances = particles.stream()
+                    .mapToDouble(p -> distance2(p.x, p.y, px, py, Lx, Ly, periodic))
+                    .sorted().limit(k).toArray();
+            int[] nearest = index.nearest(px, py, k);
+            assertEquals(expectedDistances.length, nearest.length, label + " nearest count");
+            for (int m = 0; m < nearest.length; m++) {
+                Particle p = particles.get(nearest[m]);
+                assertEquals(expectedDistances[m], distance2(p.x, p.y, px, py, Lx, Ly, periodic), 1e-12,
+                        label + " nearest(" + px + ", " + py + ", " + k + ")[" + m + "]");
+            }
+
+            double fromX = random.nextDouble() * Lx;
+            double fromY = random.nextDouble() * Ly;
+            double toX = fromX + random.nextDouble() * Lx;
+            double toY = fromY + random.nextDouble() * Ly;
+            long inside = particles.stream()
+                    .filter(p -> p.x >= fromX && p.x < toX && p.y >= fromY && p.y < toY)
+                    .count();
+            assertEquals(inside, index.count(fromX, fromY, toX, toY), label + " count");
+        }
+    }
+
+    private static List<Particle> randomParticles(SplittableRandom random, int n, double Lx, double Ly) {
+        List<Particle> particles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            particles.add(new Particle(i, random.nextDouble() * Lx, random.nextDouble() * Ly, 0));
+        }
+        return particles;
+    }
+
+    private static double distance2(double x1, double y1, double x2, double y2, double Lx, double Ly,
+                                    boolean periodic) {
+        double dx = Math.abs(x1 - x2);
+        double dy = Math.abs(y1 - y2);
+        if (periodic) {
+            dx = Math.min(dx, Lx - dx);
+            dy = Math.min(dy, Ly - dy);
+        }
+        return dx * dx + dy * dy;
+    }
+}
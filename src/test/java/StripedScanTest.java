@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StripedScanTest {
+
+    @Test
+    void stripesCoverEveryRowOnceInOrder() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (int rows : new int[]{0, 1, 2, 7, 12, 13, 100}) {
+                List<int[]> stripes = StripedScan.run(pool, rows, count -> new int[2], (from, to, sink) -> {
+                    sink[0] = from;
+                    sink[1] = to;
+                });
+                int next = 0;
+                for (int[] stripe : stripes) {
+                    assertEquals(next, stripe[0], rows + " rows");
+                    next = stripe[1];
+                }
+                assertEquals(rows, next, rows + " rows");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parallelSearchReproducesSerialLists() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // The 4 high box has 2 cell rows, which takes the small-grid stencil on a periodic y axis
+            for (double Ly : new double[]{45.0, 4.0}) {
+                for (boolean periodic : new boolean[]{true, false}) {
+                    CellIndexMethod md = new CellIndexMethod(60.0, Ly, (int) (60 * Ly), 1.5).withSeed(6)
+                            .generateRandomParticles(0.1, 0.25);
+                    md.runSimulation(periodic, periodic);
+                    NeighborList serial = md.getNeighborList();
+                    md.withParallelism(pool).runSimulation(periodic, periodic);
+                    NeighborList parallel = md.getNeighborList();
+
+                    String label = "Ly " + Ly + ", periodic " + periodic;
+                    assertArrayEquals(serial.offsets, parallel.offsets, label);
+                    assertArrayEquals(serial.ids, parallel.ids, label);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
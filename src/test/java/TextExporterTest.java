@@ -0,0 +1,43 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextExporterTest {
+
+    @Test
+    void rectangularBoxSurvivesRoundTrip(@TempDir Path dir) throws IOException {
+        CellIndexMethod md = new CellIndexMethod(30.0, 12.0, 50, 1.0).withSeed(2).generateRandomParticles(0.1, 0.3);
+        String file = dir.resolve("static_particles.txt").toString();
+        TextExporter.writeParticles(file, md);
+
+        TextExporter.ParticleFile read = TextExporter.readParticles(file);
+        assertEquals(30.0, read.Lx(), 1e-6);
+        assertEquals(12.0, read.Ly(), 1e-6);
+        assertEquals(md.getParticles().size(), read.particles().size());
+        for (int i = 0; i < read.particles().size(); i++) {
+            Particle expected = md.getParticles().get(i);
+            Particle actual = read.particles().get(i);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.x, actual.x, 1e-6);
+            assertEquals(expected.y, actual.y, 1e-6);
+            assertEquals(expected.radius, actual.radius, 1e-6);
+        }
+    }
+
+    @Test
+    void singleSideFileReadsAsSquare(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("static_particles.txt");
+        Files.writeString(file, "2\n20.000000\n0\t1.000000\t2.000000\t0.250000\n1\t3.000000\t4.000000\t0.250000\n");
+
+        TextExporter.ParticleFile read = TextExporter.readParticles(file.toString());
+        assertEquals(20.0, read.Lx());
+        assertEquals(20.0, read.Ly());
+        assertEquals(2, read.particles().size());
+        assertEquals(3.0, read.particles().get(1).x);
+    }
+}